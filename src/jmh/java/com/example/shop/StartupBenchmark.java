@@ -0,0 +1,161 @@
+package com.example.shop;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+/**
+ * Time from launching the packaged application to the first answered request, a
+ * {@code GET /inventory/{sku}} that goes to the database, against an embedded Postgres whose
+ * schema is already in place (the warmup run creates it).
+ *
+ * <ul>
+ *   <li>{@code BASELINE}: the fat jar with the default profile; Hibernate inspects and updates the schema.</li>
+ *   <li>{@code EXPLICIT_SCHEMA}: the fat jar with the fast-start profile; Flyway checks its history table instead.</li>
+ *   <li>{@code FAST_START}: what the {@code fast-start} Docker target runs; the extracted jar with the fast-start profile,
+ *       AOT-processed bean definitions and a class data sharing archive from a training run.</li>
+ * </ul>
+ *
+ * Needs the jar built with the fast-start profile:
+ * {@code mvn -B -Pbench,fast-start -DskipTests verify -Djmh.args="StartupBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+  private static final String JAR = "orders-inventory-service-0.0.1-SNAPSHOT.jar";
+  private static final String AOT_INITIALIZER = "BOOT-INF/classes/com/example/shop/ShopApplication__ApplicationContextInitializer.class";
+  private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(120);
+
+  public enum Variant { BASELINE, EXPLICIT_SCHEMA, FAST_START }
+
+  @Param({ "BASELINE", "EXPLICIT_SCHEMA", "FAST_START" })
+  Variant variant;
+
+  private final HttpClient http = HttpClient.newHttpClient();
+  private EmbeddedPostgres postgres;
+  private Path workDir;
+  private Path jar;
+  private Path log;
+  private List<String> command;
+  private HttpRequest firstRequest;
+  private Process process;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Path fatJar = Path.of(System.getProperty("startup.jar", "target/" + JAR)).toAbsolutePath();
+    try (ZipFile zip = new ZipFile(fatJar.toFile())) {
+      if (zip.getEntry(AOT_INITIALIZER) == null) {
+        throw new IllegalStateException(fatJar + " has no AOT-processed classes; package it with -Pfast-start");
+      }
+    }
+    postgres = EmbeddedPostgres.builder().start();
+    workDir = Files.createTempDirectory("startup-" + variant.name().toLowerCase());
+    log = workDir.resolve("app.log");
+    jar = fatJar;
+
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    firstRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/inventory/SKU-STARTUP")).build();
+
+    List<String> jvm = new ArrayList<>();
+    List<String> app = new ArrayList<>(List.of(
+        "--server.port=" + port,
+        "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+        "--spring.datasource.username=postgres",
+        "--spring.datasource.password=",
+        "--app.jwt.secret=benchmark-secret-benchmark-secret-benchmark",
+        "--app.outbox.log.dir=" + workDir.resolve("outbox")));
+    if (variant != Variant.BASELINE) app.add("--spring.profiles.active=fast-start");
+    if (variant == Variant.FAST_START) {
+      jar = extract(fatJar);
+      jvm.add("-Dspring.aot.enabled=true");
+      train(jvm, app);
+      jvm.add("-XX:SharedArchiveFile=" + workDir.resolve("app.jsa"));
+    }
+    command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvm);
+    command.add("-jar");
+    command.add(jar.toString());
+    command.addAll(app);
+  }
+
+  @TearDown(Level.Invocation)
+  public void stop() throws InterruptedException {
+    process.destroy();
+    process.waitFor();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    postgres.close();
+  }
+
+  @Benchmark
+  public int firstRequest() throws Exception {
+    process = launch(command);
+    long deadline = System.nanoTime() + TIMEOUT_NANOS;
+    while (true) {
+      try {
+        return http.send(firstRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+      } catch (ConnectException e) {
+        if (!process.isAlive() || System.nanoTime() > deadline) {
+          throw new IllegalStateException(variant + " did not answer; see " + log, e);
+        }
+        Thread.sleep(5);
+      }
+    }
+  }
+
+  /** Same steps as the Docker build: application jar plus lib/. */
+  private Path extract(Path fatJar) throws Exception {
+    Path extracted = workDir.resolve("extracted");
+    run(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-Djarmode=tools", "-jar", fatJar.toString(), "extract", "--destination", extracted.toString()));
+    return extracted.resolve(JAR);
+  }
+
+  /** The Docker build's training run: refresh the context, exit, and archive the loaded classes. */
+  private void train(List<String> jvm, List<String> app) throws Exception {
+    List<String> training = new ArrayList<>();
+    training.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    training.addAll(jvm);
+    training.addAll(List.of("-XX:ArchiveClassesAtExit=" + workDir.resolve("app.jsa"),
+        "-Xlog:cds=off", "-Xlog:cds+dynamic=off", "-Dspring.context.exit=onRefresh", "-jar", jar.toString()));
+    training.addAll(app);
+    training.add("--app.schema.migrate-on-start=false");
+    run(training);
+  }
+
+  private void run(List<String> cmd) throws Exception {
+    int exit = launch(cmd).waitFor();
+    if (exit != 0) throw new IllegalStateException(String.join(" ", cmd) + " exited with " + exit + "; see " + log);
+  }
+
+  private Process launch(List<String> cmd) throws IOException {
+    return new ProcessBuilder(cmd)
+        .directory(workDir.toFile())
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+        .start();
+  }
+}
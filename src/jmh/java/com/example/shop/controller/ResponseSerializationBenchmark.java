@@ -0,0 +1,74 @@
+package com.example.shop.controller;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.OrderStatus;
+import com.example.shop.domain.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response mapping plus JSON encoding, as done for every order and inventory response. The
+ * mapper is configured the way Spring Boot configures the one used by MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ResponseSerializationBenchmark {
+
+  @Param({ "1", "20" })
+  int lines;
+
+  private ObjectMapper mapper;
+  private Order order;
+  private Inventory inventory;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    mapper = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+
+    User user = new User();
+    setId(User.class, user, 7L);
+    order = new Order();
+    setId(Order.class, order, 42L);
+    order.setUser(user);
+    order.setStatus(OrderStatus.PENDING);
+    List<OrderItem> items = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) items.add(new OrderItem("SKU-BENCH-" + i, i + 1));
+    order.setItems(items);
+
+    inventory = new Inventory();
+    inventory.setProductId("SKU-BENCH-0");
+    inventory.setTotalStock(100);
+    inventory.setReservedStock(7);
+  }
+
+  @Benchmark
+  public byte[] orderResponse() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(OrderController.toResponse(order));
+  }
+
+  @Benchmark
+  public byte[] inventoryResponse() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(InventoryController.toResponse(inventory));
+  }
+
+  private static void setId(Class<?> type, Object target, Long id) throws ReflectiveOperationException {
+    var field = type.getDeclaredField("id");
+    field.setAccessible(true);
+    field.set(target, id);
+  }
+}
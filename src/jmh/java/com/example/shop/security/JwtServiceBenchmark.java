@@ -0,0 +1,61 @@
+package com.example.shop.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification. {@code authenticate} is the per-request cost once a token is
+ * cached; {@code verify} is the cost of a first sighting: signature, claims and the role to
+ * authority mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class JwtServiceBenchmark {
+  private static final List<String> ROLES = List.of("USER", "ROLE_ADMIN");
+
+  private JwtService jwtService;
+  private String token;
+
+  @Setup
+  public void setup() {
+    jwtService = new JwtService("benchmark-secret-benchmark-secret-benchmark", "orders-inventory-service", 60,
+        10_000, new SimpleMeterRegistry());
+    token = jwtService.generateToken("demo", ROLES);
+  }
+
+  @Benchmark
+  public String generateToken() {
+    return jwtService.generateToken("demo", ROLES);
+  }
+
+  @Benchmark
+  public Jws<Claims> parseToken() {
+    return jwtService.parseToken(token);
+  }
+
+  @Benchmark
+  public List<GrantedAuthority> verify() {
+    return JwtService.toAuthorities(jwtService.extractRoles(jwtService.parseToken(token).getBody()));
+  }
+
+  @Benchmark
+  public List<GrantedAuthority> roleMapping() {
+    return JwtService.toAuthorities(ROLES);
+  }
+
+  @Benchmark
+  public Authentication authenticate() {
+    return jwtService.authenticate(token);
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.service.reservation.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderService#createOrder} with in-memory repositories: line merging, product id
+ * ordering, stock checks and phase timers, without JDBC or locks. Lines arrive in a shuffled
+ * order with a fixed seed so every run sorts the same input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class CreateOrderBenchmark {
+
+  @Param({ "1", "5", "20" })
+  int lines;
+
+  private final Map<String, Inventory> rows = new HashMap<>();
+  private OrderService orderService;
+  private List<OrderItem> items;
+
+  @Setup(Level.Trial)
+  public void setup() throws ReflectiveOperationException {
+    User user = new User();
+    var id = User.class.getDeclaredField("id");
+    id.setAccessible(true);
+    id.set(user, 1L);
+
+    items = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      String productId = "SKU-BENCH-" + i;
+      Inventory inv = new Inventory();
+      inv.setProductId(productId);
+      rows.put(productId, inv);
+      items.add(new OrderItem(productId, 1));
+    }
+    Collections.shuffle(items, new Random(42));
+
+    InventoryRepository inventoryRepo = InMemoryRepositories.inventory(rows);
+    var stripes = new StripeDirectory(InMemoryRepositories.buckets());
+    var registry = new SimpleMeterRegistry();
+    var metrics = new OrderMetrics(registry, 200);
+    var reservations = new InventoryReservations(List.of(new PessimisticReservationStrategy(inventoryRepo)),
+        new BucketReservations(InMemoryRepositories.buckets(), stripes), inventoryRepo,
+        ReservationMode.PESSIMISTIC, metrics, new AvailabilityIndex(10_000, 1000, registry));
+    orderService = new OrderService(InMemoryRepositories.orders(), InMemoryRepositories.users(user),
+        reservations, event -> { }, metrics, new OrderArchive(new JdbcTemplate(), 0));
+  }
+
+  /** Every iteration starts from the same stock levels. */
+  @Setup(Level.Iteration)
+  public void restock() {
+    rows.values().forEach(inv -> {
+      inv.setTotalStock(Integer.MAX_VALUE);
+      inv.setReservedStock(0);
+    });
+  }
+
+  @Benchmark
+  public Order createOrder() {
+    return orderService.createOrder(1L, items);
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.shop.service;
+
+import com.example.shop.ShopApplication;
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderService#createOrder} end to end against an embedded Postgres: row locks, batched
+ * writes and the commit. The expiry and outbox background jobs are off, so only the measured
+ * calls touch the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class CreateOrderDatabaseBenchmark {
+
+  @Param({ "PESSIMISTIC", "CONDITIONAL_UPDATE", "OPTIMISTIC" })
+  String mode;
+
+  @Param({ "1", "20" })
+  int lines;
+
+  private EmbeddedPostgres postgres;
+  private ConfigurableApplicationContext context;
+  private OrderService orderService;
+  private Long userId;
+  private List<OrderItem> items;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    postgres = EmbeddedPostgres.builder().start();
+    context = SpringApplication.run(ShopApplication.class,
+        "--server.port=0",
+        "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+        "--spring.datasource.username=postgres",
+        "--spring.datasource.password=",
+        "--app.jwt.secret=benchmark-secret-benchmark-secret-benchmark",
+        "--app.inventory.reservation-mode=" + mode,
+        "--app.orders.expiry.enabled=false",
+        "--app.outbox.relay.enabled=false",
+        "--app.outbox.log.dir=" + Files.createTempDirectory("outbox-bench"),
+        "--logging.level.root=WARN");
+    orderService = context.getBean(OrderService.class);
+
+    User user = new User();
+    user.setEmail("bench-" + mode + "-" + lines + "@example.com");
+    user.setDisplayName("Benchmark");
+    userId = context.getBean(UserRepository.class).save(user).getId();
+
+    List<Inventory> rows = new ArrayList<>(lines);
+    items = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      Inventory inv = new Inventory();
+      inv.setProductId("SKU-BENCH-" + i);
+      inv.setTotalStock(Integer.MAX_VALUE);
+      rows.add(inv);
+      items.add(new OrderItem(inv.getProductId(), 1));
+    }
+    context.getBean(InventoryRepository.class).saveAll(rows);
+    Collections.shuffle(items, new Random(42));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    context.close();
+    postgres.close();
+  }
+
+  @Benchmark
+  public Order createOrder() {
+    return orderService.createOrder(userId, items);
+  }
+}
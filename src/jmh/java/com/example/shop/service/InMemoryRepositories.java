@@ -0,0 +1,58 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryBucketRepository;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.repository.UserRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Map-backed stand-ins for the Spring Data repositories used by order creation. They are plain
+ * proxies rather than Mockito mocks so the benchmark measures the service, not the mock's
+ * invocation recording. Any method not listed here throws.
+ */
+final class InMemoryRepositories {
+  private InMemoryRepositories() { }
+
+  static InventoryRepository inventory(Map<String, Inventory> rows) {
+    return stub(InventoryRepository.class, Map.of(
+        "lockByProductId", args -> Optional.ofNullable(rows.get((String) args[0])),
+        "findByProductId", args -> Optional.ofNullable(rows.get((String) args[0])),
+        "save", args -> args[0]));
+  }
+
+  static InventoryBucketRepository buckets() {
+    return stub(InventoryBucketRepository.class, Map.of());
+  }
+
+  static OrderRepository orders() {
+    return stub(OrderRepository.class, Map.of(
+        "save", args -> args[0],
+        "flush", args -> null));
+  }
+
+  static UserRepository users(User user) {
+    return stub(UserRepository.class, Map.of(
+        "findById", args -> user.getId().equals(args[0]) ? Optional.of(user) : Optional.empty()));
+  }
+
+  private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+    Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (self, method, args) -> {
+      Function<Object[], Object> impl = methods.get(method.getName());
+      if (impl != null) return impl.apply(args);
+      return switch (method.getName()) {
+        case "toString" -> type.getSimpleName() + " (in memory)";
+        case "hashCode" -> System.identityHashCode(self);
+        case "equals" -> self == args[0];
+        default -> throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+      };
+    });
+    return type.cast(proxy);
+  }
+}
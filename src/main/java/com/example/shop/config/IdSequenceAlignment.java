@@ -0,0 +1,59 @@
+package com.example.shop.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves the id sequences past ids already in their tables. Databases created while the entities
+ * used IDENTITY columns get fresh sequences starting at 1, which would hand out existing ids.
+ *
+ * <p>With the pooled optimizer each nextval is the top of a block of 50, so the sequence is set
+ * to the current maximum id: the next block then starts right after it. The same holds for the
+ * outbox sequence, which hands out single ids and replaced an earlier pooled one. Runs in an early
+ * lifecycle phase, after the schema is in place and before the web server starts, so that
+ * refreshing the context never touches the database.
+ */
+@Component
+public class IdSequenceAlignment implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(IdSequenceAlignment.class);
+
+  private static final Map<String, String> SEQUENCES = Map.of(
+      "users", "users_seq",
+      "orders", "orders_seq",
+      "inventory", "inventory_seq",
+      "inventory_buckets", "inventory_buckets_seq",
+      "outbox", "outbox_event_seq");
+
+  private final JdbcTemplate jdbc;
+  private volatile boolean running;
+
+  public IdSequenceAlignment(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  @Override
+  public void start() {
+    SEQUENCES.forEach((table, sequence) -> {
+      Long moved = jdbc.query(
+          "SELECT setval('" + sequence + "', m.max_id) FROM (SELECT MAX(id) AS max_id FROM " + table + ") m, "
+              + sequence + " s WHERE m.max_id IS NOT NULL AND (NOT s.is_called OR s.last_value < m.max_id)",
+          rs -> rs.next() ? rs.getLong(1) : null);
+      if (moved != null) log.info("Moved sequence {} to {} to clear existing {} ids", sequence, moved, table);
+    });
+    running = true;
+  }
+
+  @Override
+  public void stop() { running = false; }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  @Override
+  public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+}
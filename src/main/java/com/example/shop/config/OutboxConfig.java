@@ -0,0 +1,24 @@
+package com.example.shop.config;
+
+import com.example.shop.service.outbox.FileLogSink;
+import com.example.shop.service.outbox.OutboxSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class OutboxConfig {
+
+  /** The local file log, unless another {@link OutboxSink} bean (e.g. a broker) is declared. */
+  @Bean
+  @ConditionalOnMissingBean(OutboxSink.class)
+  public FileLogSink fileLogSink(@Value("${app.outbox.log.dir:./data/outbox}") Path dir,
+                                 @Value("${app.outbox.log.segment-bytes:67108864}") long segmentBytes,
+                                 @Value("${app.outbox.log.max-segments:64}") int maxSegments) throws IOException {
+    return new FileLogSink(dir, segmentBytes, maxSegments);
+  }
+}
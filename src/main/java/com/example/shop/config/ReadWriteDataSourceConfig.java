@@ -0,0 +1,96 @@
+package com.example.shop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Gives read-only transactions their own pool, so a burst of GETs and the order writes no longer
+ * compete for the same connections. Active only when {@code app.datasource.read.url} is set; it
+ * may name a replica or simply the primary again for a separate pool.
+ *
+ * <p>The exposed {@link DataSource} defers fetching a physical connection until the first
+ * statement, by which time the transaction manager has marked the connection read-only; those
+ * go to {@link ReplicaDataSource}, everything else to the write pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.read.url")
+public class ReadWriteDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource writeDataSource(DataSourceProperties properties) {
+    HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    ds.setPoolName("write");
+    return ds;
+  }
+
+  /** Started lazily, so an unreachable replica does not stop the application from starting. */
+  @Bean
+  public HikariDataSource readDataSource(DataSourceProperties properties,
+                                         @Value("${app.datasource.read.url}") String url,
+                                         @Value("${app.datasource.read.username:}") String username,
+                                         @Value("${app.datasource.read.password:}") String password,
+                                         @Value("${app.datasource.read.maximum-pool-size:10}") int poolSize,
+                                         @Value("${app.datasource.read.connection-timeout-ms:1000}") long timeoutMs) {
+    HikariDataSource ds = new HikariDataSource();
+    ds.setPoolName("read");
+    ds.setJdbcUrl(url);
+    ds.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+    ds.setPassword(username.isEmpty() ? properties.determinePassword() : password);
+    ds.setMaximumPoolSize(poolSize);
+    ds.setConnectionTimeout(timeoutMs);
+    ds.setReadOnly(true);
+    return ds;
+  }
+
+  @Bean
+  public ReplicaDataSource replicaDataSource(@Qualifier("readDataSource") DataSource read,
+                                             @Qualifier("writeDataSource") DataSource write,
+                                             @Value("${app.datasource.read.max-staleness-ms:5000}") long maxStalenessMs,
+                                             MeterRegistry registry) {
+    ReplicaDataSource replica = new ReplicaDataSource(read, write, maxStalenessMs);
+    Gauge.builder("shop.datasource.replica.lag", replica, ReplicaDataSource::getLagMs)
+        .description("Replay lag of the read replica at the last probe")
+        .baseUnit("milliseconds")
+        .register(registry);
+    Gauge.builder("shop.datasource.replica.usable", replica, r -> r.isUsable() ? 1 : 0)
+        .description("1 while read-only transactions go to the replica, 0 while they fall back to the primary")
+        .register(registry);
+    return replica;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(@Qualifier("writeDataSource") DataSource write, ReplicaDataSource replica) {
+    LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(write);
+    proxy.setReadOnlyDataSource(replica);
+    return proxy;
+  }
+
+  @Bean
+  public ReplicaProbe replicaProbe(ReplicaDataSource replica) {
+    return new ReplicaProbe(replica);
+  }
+
+  static class ReplicaProbe {
+    private final ReplicaDataSource replica;
+
+    ReplicaProbe(ReplicaDataSource replica) { this.replica = replica; }
+
+    @Scheduled(fixedDelayString = "${app.datasource.read.probe-interval-ms:1000}")
+    public void probe() { replica.probe(); }
+  }
+}
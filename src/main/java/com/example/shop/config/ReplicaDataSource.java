@@ -0,0 +1,86 @@
+package com.example.shop.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The read side handed to {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * connections come from the replica pool while its last probe succeeded and its replay lag is
+ * within {@code maxStalenessMs}, and from the primary otherwise. A replica that fails to hand out
+ * a connection is marked down until the next successful {@link #probe()}.
+ */
+public class ReplicaDataSource extends AbstractDataSource {
+  private static final Logger log = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+  /** Zero on a primary or a replica that has replayed everything it received. */
+  static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery()"
+      + " OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+      + " ELSE COALESCE(EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+  private final DataSource replica;
+  private final DataSource primary;
+  private final long maxStalenessMs;
+  private volatile boolean up = true;
+  private volatile long lagMs;
+
+  public ReplicaDataSource(DataSource replica, DataSource primary, long maxStalenessMs) {
+    this.replica = replica;
+    this.primary = primary;
+    this.maxStalenessMs = maxStalenessMs;
+  }
+
+  public boolean isUsable() { return up && lagMs <= maxStalenessMs; }
+
+  public long getLagMs() { return lagMs; }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!isUsable()) return primary.getConnection();
+    try {
+      return replica.getConnection();
+    } catch (SQLException ex) {
+      markDown(ex);
+      return primary.getConnection();
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    if (!isUsable()) return primary.getConnection(username, password);
+    try {
+      return replica.getConnection(username, password);
+    } catch (SQLException ex) {
+      markDown(ex);
+      return primary.getConnection(username, password);
+    }
+  }
+
+  /** Refreshes availability and lag; called on a fixed delay. */
+  public void probe() {
+    try (Connection con = replica.getConnection(); Statement st = con.createStatement();
+         ResultSet rs = st.executeQuery(LAG_SQL)) {
+      rs.next();
+      long lag = rs.getLong(1);
+      if (!up) log.info("Read replica is reachable again (lag {} ms)", lag);
+      if (lag > maxStalenessMs && lagMs <= maxStalenessMs) {
+        log.warn("Read replica lags {} ms, over the {} ms tolerance; reading from the primary", lag, maxStalenessMs);
+      }
+      lagMs = lag;
+      up = true;
+    } catch (SQLException ex) {
+      markDown(ex);
+    }
+  }
+
+  private void markDown(SQLException ex) {
+    if (up) log.warn("Read replica unavailable, reading from the primary: {}", ex.getMessage());
+    up = false;
+  }
+}
@@ -0,0 +1,23 @@
+package com.example.shop.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SchemaMigrationConfig {
+
+  /**
+   * Applies pending migrations at startup when Flyway is enabled. Turning it off leaves the
+   * database alone, e.g. when migrations run from a separate deploy step, or for the class
+   * data sharing training run in the image build, which has no database. Read at run time,
+   * unlike {@code spring.flyway.enabled}, which AOT processing fixes at build time.
+   */
+  @Bean
+  public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${app.schema.migrate-on-start:true}") boolean migrate) {
+    return flyway -> {
+      if (migrate) flyway.migrate();
+    };
+  }
+}
@@ -39,8 +39,12 @@ public class SecurityConfig {
           .requestMatchers("/auth/**").permitAll()
           .requestMatchers(HttpMethod.GET, "/orders/**").permitAll()
           .requestMatchers(HttpMethod.GET, "/inventory/**").permitAll()
+          .requestMatchers(HttpMethod.POST, "/inventory").permitAll()
           .requestMatchers(HttpMethod.POST, "/orders/**").authenticated()
           .requestMatchers(HttpMethod.POST, "/inventory/**").authenticated()
+          .requestMatchers("/users/**").authenticated()
+          .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+          .requestMatchers("/actuator/**").hasRole("ADMIN")
           .anyRequest().permitAll()
       )
       .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
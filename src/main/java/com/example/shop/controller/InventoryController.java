@@ -2,37 +2,111 @@
 package com.example.shop.controller;
 
 import com.example.shop.domain.Inventory;
+import com.example.shop.service.DatabaseBulkhead;
+import com.example.shop.service.ImportFormat;
+import com.example.shop.service.InventoryImportService;
 import com.example.shop.service.InventoryService;
+import com.example.shop.web.dto.InventoryImportResponse;
+import com.example.shop.web.dto.InventoryLookupRequest;
+import com.example.shop.web.dto.InventoryLookupResponse;
 import com.example.shop.web.dto.InventoryResponse;
+import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.util.*;
+
 @RestController
 @RequestMapping("/inventory")
 public class InventoryController {
   private final InventoryService inventoryService;
-  public InventoryController(InventoryService inventoryService) { this.inventoryService = inventoryService; }
+  private final InventoryImportService importService;
+  private final DatabaseBulkhead bulkhead;
+
+  public InventoryController(InventoryService inventoryService, InventoryImportService importService,
+                             DatabaseBulkhead bulkhead) {
+    this.inventoryService = inventoryService;
+    this.importService = importService;
+    this.bulkhead = bulkhead;
+  }
 
   @GetMapping("/{productId}")
   public ResponseEntity<InventoryResponse> get(@PathVariable String productId) {
     Inventory inv = inventoryService.getInventoryByProductId(productId);
-    InventoryResponse res = new InventoryResponse();
-    res.productId = inv.getProductId();
-    res.totalStock = inv.getTotalStock();
-    res.reservedStock = inv.getReservedStock();
-    res.availableStock = inv.getAvailableStock();
-    return ResponseEntity.ok(res);
+    return ResponseEntity.ok(toResponse(inv));
+  }
+
+  /** Availability for many products at once, e.g. {@code ?productIds=SKU-1,SKU-2}. */
+  @GetMapping
+  public ResponseEntity<InventoryLookupResponse> lookup(@RequestParam List<String> productIds) {
+    return ResponseEntity.ok(toLookupResponse(productIds));
+  }
+
+  /** Same as the GET lookup, for id lists too long for a query string. */
+  @PostMapping
+  public ResponseEntity<InventoryLookupResponse> lookup(@Valid @RequestBody InventoryLookupRequest req) {
+    return ResponseEntity.ok(toLookupResponse(req.getProductIds()));
   }
 
   @PostMapping("/{productId}")
   public ResponseEntity<InventoryResponse> upsert(@PathVariable String productId,
                                                 @RequestParam int totalStock) {
     Inventory inv = inventoryService.upsertInventory(productId, totalStock);
+    return ResponseEntity.ok(toResponse(inv));
+  }
+
+  /** Streaming stock import: {@code productId,totalStock} lines. Reserved stock is preserved. */
+  @PostMapping(value = "/import", consumes = "text/csv")
+  public ResponseEntity<InventoryImportResponse> importCsv(InputStream body) {
+    return ResponseEntity.ok(toImportResponse(bulkhead.call(() -> importService.importStock(body, ImportFormat.CSV))));
+  }
+
+  /** Streaming stock import: one {@code {"productId","totalStock"}} object per line. */
+  @PostMapping(value = "/import", consumes = "application/x-ndjson")
+  public ResponseEntity<InventoryImportResponse> importNdjson(InputStream body) {
+    return ResponseEntity.ok(toImportResponse(bulkhead.call(() -> importService.importStock(body, ImportFormat.NDJSON))));
+  }
+
+  /** Stripe a hot product's stock across {@code count} bucket rows; {@code count=1} un-stripes it. */
+  @PostMapping("/{productId}/buckets")
+  public ResponseEntity<InventoryResponse> stripe(@PathVariable String productId,
+                                                @RequestParam int count) {
+    Inventory inv = inventoryService.stripeInventory(productId, count);
+    return ResponseEntity.ok(toResponse(inv));
+  }
+
+  private InventoryLookupResponse toLookupResponse(List<String> productIds) {
+    Map<String, Inventory> found = inventoryService.getInventoryByProductIds(productIds);
+    InventoryLookupResponse res = new InventoryLookupResponse();
+    res.items = new LinkedHashMap<>();
+    found.forEach((id, inv) -> res.items.put(id, new InventoryLookupResponse.Stock(inv.getTotalStock(), inv.getReservedStock())));
+    Set<String> unknown = new LinkedHashSet<>();
+    for (String id : productIds) {
+      if (id != null && !id.isBlank() && !found.containsKey(id.trim())) unknown.add(id.trim());
+    }
+    res.unknown = new ArrayList<>(unknown);
+    return res;
+  }
+
+  private InventoryImportResponse toImportResponse(InventoryImportService.Result result) {
+    InventoryImportResponse res = new InventoryImportResponse();
+    res.rowsRead = result.rowsRead();
+    res.rowsUpserted = result.rowsUpserted();
+    res.rowsFailed = result.rowsFailed();
+    res.elapsedMs = result.elapsedMs();
+    res.errors = result.errors().stream()
+        .map(e -> new InventoryImportResponse.RowError(e.line(), e.message()))
+        .toList();
+    return res;
+  }
+
+  static InventoryResponse toResponse(Inventory inv) {
     InventoryResponse res = new InventoryResponse();
     res.productId = inv.getProductId();
     res.totalStock = inv.getTotalStock();
     res.reservedStock = inv.getReservedStock();
     res.availableStock = inv.getAvailableStock();
-    return ResponseEntity.ok(res);
+    return res;
   }
 }
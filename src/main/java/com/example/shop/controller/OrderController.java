@@ -3,67 +3,111 @@ package com.example.shop.controller;
 
 import com.example.shop.domain.Order;
 import com.example.shop.domain.OrderItem;
+import com.example.shop.service.AvailabilityIndex;
+import com.example.shop.service.DatabaseBulkhead;
+import com.example.shop.service.OrderIdempotency;
+import com.example.shop.service.OrderIntake;
 import com.example.shop.service.OrderService;
+import com.example.shop.service.OrderTransition;
+import com.example.shop.service.OrderView;
+import com.example.shop.web.dto.BulkOrderRequest;
+import com.example.shop.web.dto.BulkOrderResponse;
 import com.example.shop.web.dto.CreateOrderRequest;
 import com.example.shop.web.dto.OrderResponse;
 import jakarta.validation.Valid;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/orders")
-@EnableAsync
 public class OrderController {
   private final OrderService orderService;
-  public OrderController(OrderService orderService) { this.orderService = orderService; }
+  private final OrderIntake orderIntake;
+  private final DatabaseBulkhead bulkhead;
+  private final OrderIdempotency idempotency;
+  private final AvailabilityIndex availability;
 
+  public OrderController(OrderService orderService, ObjectProvider<OrderIntake> orderIntake,
+                         DatabaseBulkhead bulkhead, OrderIdempotency idempotency, AvailabilityIndex availability) {
+    this.orderService = orderService;
+    this.orderIntake = orderIntake.getIfAvailable();
+    this.bulkhead = bulkhead;
+    this.idempotency = idempotency;
+    this.availability = availability;
+  }
+
+  /**
+   * With an Idempotency-Key the order is created directly rather than through the intake batch,
+   * since the key must commit in the order's own transaction. A replay returns the stored order
+   * with an {@code Idempotent-Replayed} header. Orders for products known to be short are turned
+   * away by the {@link AvailabilityIndex} first; with a key, only after a replay was ruled out, so
+   * the rejection is stored like any other conflict.
+   */
   @PostMapping
-  @Async
-  public CompletableFuture<ResponseEntity<OrderResponse>> create(@Valid @RequestBody CreateOrderRequest req) {
+  public ResponseEntity<OrderResponse> create(@RequestHeader(value = "Idempotency-Key", required = false) String key,
+                                              @Valid @RequestBody CreateOrderRequest req) {
     List<OrderItem> items = req.getItems().stream()
             .map(i -> new OrderItem(i.getProductId(), i.getQuantity()))
             .collect(Collectors.toList());
 
-    return orderService.createOrder(req.getUserId(), items)
-            .thenApply(order -> {
-              OrderResponse body = toResponse(order);
-              return ResponseEntity.created(URI.create("/orders/" + order.getId())).body(body);
-            })
-            .exceptionally(ex -> {
-              return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                      .body(null);
-            });
+    if (key != null) {
+      OrderIdempotency.Result result = idempotency.createOrder(key, req.getUserId(), items,
+              () -> {
+                availability.check(items);
+                return orderService.createOrder(req.getUserId(), items);
+              });
+      if (!result.replayed()) {
+        return ResponseEntity.created(URI.create("/orders/" + result.orderId())).body(toResponse(result.created()));
+      }
+      return ResponseEntity.created(URI.create("/orders/" + result.orderId()))
+              .header("Idempotent-Replayed", "true")
+              .body(toResponse(orderService.getOrderViewFromPrimary(result.orderId())));
+    }
+
+    availability.check(items);
+    Order order = orderIntake != null
+            ? awaitIntake(req.getUserId(), items)
+            : bulkhead.call(() -> orderService.createOrder(req.getUserId(), items));
+    return ResponseEntity.created(URI.create("/orders/" + order.getId())).body(toResponse(order));
   }
 
   @GetMapping("/{id}")
   public ResponseEntity<OrderResponse> get(@PathVariable Long id) {
-    Order order = orderService.getOrderById(id);
-    return ResponseEntity.ok(toResponse(order));
+    return ResponseEntity.ok(toResponse(orderService.getOrderView(id)));
   }
 
   @PostMapping("/{id}/confirm")
   public ResponseEntity<OrderResponse> confirm(@PathVariable Long id) {
-    Order order = orderService.confirmOrder(id);
+    Order order = bulkhead.call(() -> orderService.confirmOrder(id));
     return ResponseEntity.ok(toResponse(order));
   }
 
   @PostMapping("/{id}/cancel")
   public ResponseEntity<OrderResponse> cancel(@PathVariable Long id) {
-    Order order = orderService.cancelOrder(id);
+    Order order = bulkhead.call(() -> orderService.cancelOrder(id));
     return ResponseEntity.ok(toResponse(order));
   }
 
-  private OrderResponse toResponse(Order order) {
+  /** Confirms many orders in one transaction; ids that are not PENDING are reported, not failed. */
+  @PostMapping("/confirm")
+  public ResponseEntity<BulkOrderResponse> confirmAll(@RequestBody BulkOrderRequest req) {
+    return ResponseEntity.ok(toBulkResponse(bulkhead.call(() -> orderService.confirmOrders(req.getOrderIds()))));
+  }
+
+  /** Cancels many orders in one transaction, releasing their stock in one pass per product. */
+  @PostMapping("/cancel")
+  public ResponseEntity<BulkOrderResponse> cancelAll(@RequestBody BulkOrderRequest req) {
+    return ResponseEntity.ok(toBulkResponse(bulkhead.call(() -> orderService.cancelOrders(req.getOrderIds()))));
+  }
+
+  static OrderResponse toResponse(Order order) {
     OrderResponse res = new OrderResponse();
     res.id = order.getId();
     res.userId = order.getUser().getId();
@@ -76,6 +120,38 @@ public class OrderController {
     return res;
   }
 
+  static OrderResponse toResponse(OrderView view) {
+    OrderResponse res = new OrderResponse();
+    res.id = view.id();
+    res.userId = view.userId();
+    res.status = view.status();
+    res.items = view.items().stream()
+            .map(i -> new OrderResponse.Item(i.getProductId(), i.getQuantity()))
+            .collect(Collectors.toList());
+    res.createdAt = view.createdAt();
+    res.updatedAt = view.updatedAt();
+    return res;
+  }
+
+  private static BulkOrderResponse toBulkResponse(List<OrderTransition> transitions) {
+    BulkOrderResponse res = new BulkOrderResponse();
+    res.results = transitions.stream()
+            .map(t -> new BulkOrderResponse.Result(t.id(), t.outcome().name(), t.status()))
+            .collect(Collectors.toList());
+    res.applied = (int) transitions.stream().filter(t -> t.outcome() == OrderTransition.Outcome.APPLIED).count();
+    return res;
+  }
+
+  /** The intake's workers hold their own connections, so waiting here takes no bulkhead slot. */
+  private Order awaitIntake(Long userId, List<OrderItem> items) {
+    try {
+      return orderIntake.submit(userId, items).join();
+    } catch (CompletionException ex) {
+      if (unwrap(ex) instanceof RuntimeException cause) throw cause;
+      throw ex;
+    }
+  }
+
   private Throwable unwrap(Throwable t) {
     return (t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null
             ? t.getCause() : t;
@@ -0,0 +1,54 @@
+package com.example.shop.controller;
+
+import com.example.shop.service.OrderPage;
+import com.example.shop.service.OrderService;
+import com.example.shop.web.dto.OrderPageResponse;
+import com.example.shop.web.error.ForbiddenException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/users")
+public class UserController {
+  private final OrderService orderService;
+
+  public UserController(OrderService orderService) {
+    this.orderService = orderService;
+  }
+
+  /**
+   * Pass the previous page's {@code nextCursor} as {@code after}; it is null on the last page.
+   * Only the user themselves and admins may list the orders.
+   */
+  @GetMapping("/{id}/orders")
+  public ResponseEntity<OrderPageResponse> orders(@PathVariable Long id,
+                                                  @RequestParam(required = false) String status,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(defaultValue = "20") int limit,
+                                                  Authentication auth) {
+    checkAccess(id, auth);
+    OrderPage page = orderService.listUserOrders(id, status, after, limit);
+    OrderPageResponse res = new OrderPageResponse();
+    res.items = page.items().stream().map(o -> {
+      OrderPageResponse.Summary s = new OrderPageResponse.Summary();
+      s.id = o.id();
+      s.status = o.status();
+      s.createdAt = o.createdAt();
+      s.updatedAt = o.updatedAt();
+      return s;
+    }).collect(Collectors.toList());
+    res.nextCursor = page.nextCursor();
+    return ResponseEntity.ok(res);
+  }
+
+  private void checkAccess(Long userId, Authentication auth) {
+    if (auth == null) throw new ForbiddenException("Authentication required");
+    boolean admin = auth.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    if (!admin && !orderService.isUser(userId, auth.getName())) {
+      throw new ForbiddenException("Not allowed to view orders of user " + userId);
+    }
+  }
+}
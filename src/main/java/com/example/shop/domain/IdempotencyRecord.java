@@ -0,0 +1,41 @@
+package com.example.shop.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Outcome of a POST /orders that carried an Idempotency-Key: the order it created, or the client
+ * error it was rejected with. Kept for the retention window so retries can be answered from it.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+  @Index(name = "idx_idempotency_keys_created", columnList = "created_at")
+})
+public class IdempotencyRecord {
+  @Id
+  @Column(name = "idempotency_key", length = 255)
+  private String key;
+
+  /** SHA-256 of the request, so a key reused for a different order is detected. */
+  @Column(nullable = false, length = 64)
+  private String fingerprint;
+
+  @Column(name = "order_id")
+  private Long orderId;
+
+  @Column(name = "error_status")
+  private Integer errorStatus;
+
+  @Column(name = "error_message", length = 1000)
+  private String errorMessage;
+
+  @Column(name = "created_at", nullable = false)
+  private OffsetDateTime createdAt;
+
+  public String getKey() { return key; }
+  public String getFingerprint() { return fingerprint; }
+  public Long getOrderId() { return orderId; }
+  public Integer getErrorStatus() { return errorStatus; }
+  public String getErrorMessage() { return errorMessage; }
+  public OffsetDateTime getCreatedAt() { return createdAt; }
+}
@@ -10,7 +10,9 @@ import jakarta.validation.constraints.NotBlank;
   @UniqueConstraint(name = "uk_inventory_product", columnNames = "product_id")
 })
 public class Inventory {
-  @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_seq")
+  @SequenceGenerator(name = "inventory_seq", sequenceName = "inventory_seq", allocationSize = 50)
   private Long id;
 
   @NotBlank
@@ -25,6 +27,15 @@ public class Inventory {
   @Column(name = "reserved_stock", nullable = false)
   private int reservedStock;
 
+  /**
+   * Bumped by every write, including the bulk and native updates, so a version-checked update
+   * fails if anything touched the row since it was read. The default covers existing rows and
+   * raw inserts.
+   */
+  @Version
+  @Column(name = "version", columnDefinition = "bigint default 0 not null")
+  private long version;
+
   public Long getId() { return id; }
   public String getProductId() { return productId; }
   public void setProductId(String productId) { this.productId = productId; }
@@ -32,6 +43,7 @@ public class Inventory {
   public void setTotalStock(int totalStock) { this.totalStock = totalStock; }
   public int getReservedStock() { return reservedStock; }
   public void setReservedStock(int reservedStock) { this.reservedStock = reservedStock; }
+  public long getVersion() { return version; }
 
   @Transient
   public int getAvailableStock() { return totalStock - reservedStock; }
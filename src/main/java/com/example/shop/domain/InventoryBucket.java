@@ -0,0 +1,52 @@
+package com.example.shop.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * One stripe of a hot product's stock. While a product is striped its stock lives only in
+ * these rows and the parent {@link Inventory} row is kept at zero.
+ */
+@Entity
+@Table(name = "inventory_buckets", uniqueConstraints = {
+  @UniqueConstraint(name = "uk_inventory_bucket", columnNames = {"product_id", "bucket_no"})
+})
+public class InventoryBucket {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_buckets_seq")
+  @SequenceGenerator(name = "inventory_buckets_seq", sequenceName = "inventory_buckets_seq", allocationSize = 50)
+  private Long id;
+
+  @NotBlank
+  @Column(name = "product_id", nullable = false)
+  private String productId;
+
+  @Min(0)
+  @Column(name = "bucket_no", nullable = false)
+  private int bucketNo;
+
+  @Min(0)
+  @Column(name = "total_stock", nullable = false)
+  private int totalStock;
+
+  @Min(0)
+  @Column(name = "reserved_stock", nullable = false)
+  private int reservedStock;
+
+  public InventoryBucket() {}
+  public InventoryBucket(String productId, int bucketNo) {
+    this.productId = productId; this.bucketNo = bucketNo;
+  }
+
+  public Long getId() { return id; }
+  public String getProductId() { return productId; }
+  public int getBucketNo() { return bucketNo; }
+  public int getTotalStock() { return totalStock; }
+  public void setTotalStock(int totalStock) { this.totalStock = totalStock; }
+  public int getReservedStock() { return reservedStock; }
+  public void setReservedStock(int reservedStock) { this.reservedStock = reservedStock; }
+
+  @Transient
+  public int getAvailableStock() { return totalStock - reservedStock; }
+}
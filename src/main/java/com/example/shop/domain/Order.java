@@ -8,9 +8,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+  @Index(name = "idx_orders_user_created", columnList = "user_id, created_at, id"),
+  @Index(name = "idx_orders_user_status_created", columnList = "user_id, status, created_at, id")
+})
 public class Order {
-  @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+  @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
   private Long id;
 
   @ManyToOne(optional = false)
@@ -0,0 +1,45 @@
+package com.example.shop.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * An order state change waiting to be relayed downstream. Written in the same transaction as
+ * the change and deleted once the relay has handed it to the sink.
+ *
+ * <p>Ids are taken from the sequence one at a time rather than in pooled blocks: changes to one
+ * order are serialized by its row lock, so its later events always get higher ids and the relay,
+ * which goes by id, publishes them in order.
+ */
+@Entity
+@Table(name = "outbox")
+public class OutboxEvent {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+  @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+  private Long id;
+
+  @Column(name = "order_id", nullable = false)
+  private Long orderId;
+
+  @Column(nullable = false)
+  private String type;
+
+  /** JSON document describing the order after the change. */
+  @Column(nullable = false, columnDefinition = "text")
+  private String payload;
+
+  @Column(name = "created_at", nullable = false)
+  private OffsetDateTime createdAt = OffsetDateTime.now();
+
+  public OutboxEvent() {}
+  public OutboxEvent(Long orderId, String type, String payload) {
+    this.orderId = orderId; this.type = type; this.payload = payload;
+  }
+
+  public Long getId() { return id; }
+  public Long getOrderId() { return orderId; }
+  public String getType() { return type; }
+  public String getPayload() { return payload; }
+  public OffsetDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,39 @@
+package com.example.shop.repository;
+
+import com.example.shop.domain.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+
+public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, String> {
+
+  /**
+   * Takes the key for the current transaction; 0 when it is already stored. A concurrent claim of
+   * the same key waits for the other transaction and returns 0 once that one commits.
+   */
+  @Modifying
+  @Query(value = "INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at)"
+      + " VALUES (:key, :fingerprint, now()) ON CONFLICT (idempotency_key) DO NOTHING", nativeQuery = true)
+  int claim(@Param("key") String key, @Param("fingerprint") String fingerprint);
+
+  @Modifying
+  @Query(value = "UPDATE idempotency_keys SET order_id = :orderId WHERE idempotency_key = :key", nativeQuery = true)
+  void recordOrder(@Param("key") String key, @Param("orderId") Long orderId);
+
+  /**
+   * Plain insert, without the existence check save() does for assigned ids. A concurrent insert
+   * of the same key waits for the other transaction and then fails with a duplicate key.
+   */
+  @Modifying
+  @Query(value = "INSERT INTO idempotency_keys (idempotency_key, fingerprint, error_status, error_message, created_at)"
+      + " VALUES (:key, :fingerprint, :status, :message, now())", nativeQuery = true)
+  void insertError(@Param("key") String key, @Param("fingerprint") String fingerprint, @Param("status") int status,
+                   @Param("message") String message);
+
+  @Modifying
+  @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+  int deleteCreatedBefore(@Param("cutoff") OffsetDateTime cutoff);
+}
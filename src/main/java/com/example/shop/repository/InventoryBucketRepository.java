@@ -0,0 +1,42 @@
+package com.example.shop.repository;
+
+import com.example.shop.domain.InventoryBucket;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+public interface InventoryBucketRepository extends JpaRepository<InventoryBucket, Long> {
+  List<InventoryBucket> findByProductIdOrderByBucketNo(String productId);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT b FROM InventoryBucket b WHERE b.productId = :productId ORDER BY b.bucketNo")
+  List<InventoryBucket> lockByProductId(@Param("productId") String productId);
+
+  @Modifying
+  @Query("UPDATE InventoryBucket b SET b.reservedStock = b.reservedStock + :quantity"
+      + " WHERE b.productId = :productId AND b.bucketNo = :bucketNo AND b.totalStock - b.reservedStock >= :quantity")
+  int tryReserve(@Param("productId") String productId, @Param("bucketNo") int bucketNo, @Param("quantity") int quantity);
+
+  @Modifying
+  @Query("UPDATE InventoryBucket b SET b.reservedStock = b.reservedStock - :quantity"
+      + " WHERE b.productId = :productId AND b.bucketNo = :bucketNo AND b.reservedStock >= :quantity")
+  int tryRelease(@Param("productId") String productId, @Param("bucketNo") int bucketNo, @Param("quantity") int quantity);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("DELETE FROM InventoryBucket b WHERE b.productId = :productId")
+  int deleteByProductId(@Param("productId") String productId);
+
+  /** Rows of {productId, SUM(totalStock), SUM(reservedStock)} for the given striped products. */
+  @Query("SELECT b.productId, SUM(b.totalStock), SUM(b.reservedStock) FROM InventoryBucket b"
+      + " WHERE b.productId IN :productIds GROUP BY b.productId")
+  List<Object[]> sumByProductIdIn(@Param("productIds") Collection<String> productIds);
+
+  @Query("SELECT DISTINCT b.productId FROM InventoryBucket b WHERE b.productId IN :productIds")
+  List<String> findStripedProductIdsIn(@Param("productIds") Collection<String> productIds);
+
+  /** Rows of {productId, bucketCount} for every striped product. */
+  @Query("SELECT b.productId, COUNT(b) FROM InventoryBucket b GROUP BY b.productId")
+  List<Object[]> countBucketsByProduct();
+}
@@ -1,16 +1,57 @@
-
 package com.example.shop.repository;
 
 import com.example.shop.domain.Inventory;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface InventoryRepository extends JpaRepository<Inventory, Long> {
   Optional<Inventory> findByProductId(String productId);
 
+  List<Inventory> findByProductIdIn(Collection<String> productIds);
+
+  /**
+   * Does not auto-flush: locking one product per order line would otherwise flush the previous
+   * line's update as its own statement and break the update batch at commit.
+   */
   @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
   @Query("SELECT i FROM Inventory i WHERE i.productId = :productId")
   Optional<Inventory> lockByProductId(@Param("productId") String productId);
+
+  /** Locks several rows in one round trip, in product id order. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT i FROM Inventory i WHERE i.productId IN :productIds ORDER BY i.productId")
+  List<Inventory> lockAllByProductIdIn(@Param("productIds") Collection<String> productIds);
+
+  /** Reserve in a single statement; returns 0 when stock is insufficient or the product is unknown. */
+  @Modifying
+  @Query("UPDATE Inventory i SET i.reservedStock = i.reservedStock + :quantity, i.version = i.version + 1"
+      + " WHERE i.productId = :productId AND i.totalStock - i.reservedStock >= :quantity")
+  int tryReserve(@Param("productId") String productId, @Param("quantity") int quantity);
+
+  /** Release in a single statement, clamping at zero; returns 0 when the product is unknown. */
+  @Modifying
+  @Query("UPDATE Inventory i SET i.reservedStock = CASE WHEN i.reservedStock > :quantity"
+      + " THEN i.reservedStock - :quantity ELSE 0 END, i.version = i.version + 1 WHERE i.productId = :productId")
+  int release(@Param("productId") String productId, @Param("quantity") int quantity);
+
+  /** Stock and version without loading the entity; the input of a version-checked update. */
+  @Query("SELECT new com.example.shop.repository.InventoryVersion(i.totalStock, i.reservedStock, i.version)"
+      + " FROM Inventory i WHERE i.productId = :productId")
+  Optional<InventoryVersion> findVersionByProductId(@Param("productId") String productId);
+
+  /**
+   * Adds {@code delta} to the reserved stock only if the row still has {@code version}; returns 0
+   * when another write got there first (or the product is unknown).
+   */
+  @Modifying
+  @Query("UPDATE Inventory i SET i.reservedStock = i.reservedStock + :delta, i.version = i.version + 1"
+      + " WHERE i.productId = :productId AND i.version = :version")
+  int addReservedIfVersion(@Param("productId") String productId, @Param("delta") int delta,
+                           @Param("version") long version);
 }
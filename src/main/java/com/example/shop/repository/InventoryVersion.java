@@ -0,0 +1,6 @@
+package com.example.shop.repository;
+
+/** Stock columns of one inventory row together with the version they were read at. */
+public record InventoryVersion(int totalStock, int reservedStock, long version) {
+  public int availableStock() { return totalStock - reservedStock; }
+}
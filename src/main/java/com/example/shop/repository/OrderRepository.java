@@ -1,7 +1,77 @@
-
 package com.example.shop.repository;
 
 import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderRepository extends JpaRepository<Order, Long> {
+
+  /** Read model for an order: a single join, no entities loaded into the persistence context. */
+  @Query("SELECT new com.example.shop.repository.OrderRow(o.id, o.user.id, o.status, o.createdAt, o.updatedAt,"
+      + " i.productId, i.quantity) FROM Order o LEFT JOIN o.items i WHERE o.id = :id")
+  List<OrderRow> findRowsById(@Param("id") Long id);
+
+  /**
+   * A user's orders, newest first, strictly after the keyset ({@code createdAt}, {@code id}).
+   * Pass the far future and {@link Long#MAX_VALUE} for the first page. Uses idx_orders_user_created.
+   */
+  @Query("SELECT new com.example.shop.repository.OrderSummary(o.id, o.status, o.createdAt, o.updatedAt)"
+      + " FROM Order o WHERE o.user.id = :userId"
+      + " AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id))"
+      + " ORDER BY o.createdAt DESC, o.id DESC")
+  List<OrderSummary> findPageByUser(@Param("userId") Long userId, @Param("createdAt") OffsetDateTime createdAt,
+                                    @Param("id") Long id, Limit limit);
+
+  /** Same as {@link #findPageByUser} for one status. Uses idx_orders_user_status_created. */
+  @Query("SELECT new com.example.shop.repository.OrderSummary(o.id, o.status, o.createdAt, o.updatedAt)"
+      + " FROM Order o WHERE o.user.id = :userId AND o.status = :status"
+      + " AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id))"
+      + " ORDER BY o.createdAt DESC, o.id DESC")
+  List<OrderSummary> findPageByUserAndStatus(@Param("userId") Long userId, @Param("status") OrderStatus status,
+                                             @Param("createdAt") OffsetDateTime createdAt, @Param("id") Long id,
+                                             Limit limit);
+
+  /** Locks the order row so status changes cannot interleave with expiry; the user comes in the same statement. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT o FROM Order o JOIN FETCH o.user WHERE o.id = :id")
+  Optional<Order> lockById(@Param("id") Long id);
+
+  /** Locks whichever of {@code ids} are still PENDING, in id order, and returns their ids. */
+  @Query(value = "SELECT id FROM orders WHERE id IN (:ids) AND status = 'PENDING' ORDER BY id FOR UPDATE",
+      nativeQuery = true)
+  List<Long> lockPendingIds(@Param("ids") Collection<Long> ids);
+
+  @Query("SELECT new com.example.shop.repository.OrderRow(o.id, o.user.id, o.status, o.createdAt, o.updatedAt,"
+      + " i.productId, i.quantity) FROM Order o LEFT JOIN o.items i WHERE o.id IN :ids")
+  List<OrderRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Confirms whichever of {@code ids} are still PENDING in one statement and returns their ids.
+   * The rows are locked in id order first, as {@link #lockPendingIds} does, so a bulk confirm
+   * cannot deadlock with a bulk cancel or expiry over the same orders.
+   */
+  @Query(value = "WITH locked AS (SELECT id FROM orders WHERE id IN (:ids) AND status = 'PENDING' ORDER BY id FOR UPDATE)"
+      + " UPDATE orders o SET status = 'CONFIRMED', updated_at = :now FROM locked l WHERE o.id = l.id"
+      + " RETURNING o.id", nativeQuery = true)
+  List<Long> confirmPending(@Param("ids") Collection<Long> ids, @Param("now") OffsetDateTime now);
+
+  @Query("SELECT new com.example.shop.repository.OrderSummary(o.id, o.status, o.createdAt, o.updatedAt)"
+      + " FROM Order o WHERE o.id IN :ids")
+  List<OrderSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 
-public interface OrderRepository extends JpaRepository<Order, Long> { }
+  @Modifying
+  @Query("UPDATE Order o SET o.status = :status, o.updatedAt = :now WHERE o.id IN :ids")
+  int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status,
+                   @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,8 @@
+package com.example.shop.repository;
+
+import com.example.shop.domain.OrderStatus;
+import java.time.OffsetDateTime;
+
+/** One row of an order joined with one of its items; item columns are null for an empty order. */
+public record OrderRow(Long id, Long userId, OrderStatus status, OffsetDateTime createdAt,
+                       OffsetDateTime updatedAt, String productId, Integer quantity) { }
@@ -0,0 +1,7 @@
+package com.example.shop.repository;
+
+import com.example.shop.domain.OrderStatus;
+import java.time.OffsetDateTime;
+
+/** Order columns only, for listings. */
+public record OrderSummary(Long id, OrderStatus status, OffsetDateTime createdAt, OffsetDateTime updatedAt) { }
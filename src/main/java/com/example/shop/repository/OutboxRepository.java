@@ -0,0 +1,19 @@
+package com.example.shop.repository;
+
+import com.example.shop.domain.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+  /** Oldest pending events; only the relay holding {@link #tryLock} reads them. */
+  @Query(value = "SELECT * FROM outbox ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+  List<OutboxEvent> lockBatch(@Param("limit") int limit);
+
+  /** Transaction-scoped advisory lock; false while another transaction holds {@code key}. */
+  @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+  boolean tryLock(@Param("key") long key);
+}
@@ -1,7 +1,14 @@
-
 package com.example.shop.repository;
 
 import com.example.shop.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface UserRepository extends JpaRepository<User, Long> {
 
-public interface UserRepository extends JpaRepository<User, Long> { }
+  @Query("select u.email from User u where u.id = :id")
+  Optional<String> findEmailById(@Param("id") Long id);
+}
@@ -1,21 +1,14 @@
 
 package com.example.shop.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import jakarta.servlet.*;
 import jakarta.servlet.http.*;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -35,18 +28,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
       String token = header.substring(7);
       try {
-        Jws<Claims> jws = jwtService.parseToken(token);
-        Claims claims = jws.getBody();
-
-        String username = claims.getSubject();
-        List<GrantedAuthority> authorities = jwtService.extractRoles(claims)
-            .stream()
-            .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
-            .map(SimpleGrantedAuthority::new)
-            .collect(Collectors.toList());
-
-        var auth = new UsernamePasswordAuthenticationToken(username, null, authorities);
-        SecurityContextHolder.getContext().setAuthentication(auth);
+        SecurityContextHolder.getContext().setAuthentication(jwtService.authenticate(token));
       } catch (Exception ex) {
         SecurityContextHolder.clearContext();
       }
@@ -1,14 +1,26 @@
-
 package com.example.shop.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,14 +29,28 @@ public class JwtService {
   private final Key key;
   private final String issuer;
   private final long expirationMinutes;
+  private final JwtParser parser;
+  private final Cache<String, Verified> verified;
 
   public JwtService(
       @Value("${app.jwt.secret}") String secret,
       @Value("${app.jwt.issuer}") String issuer,
-      @Value("${app.jwt.expiration-minutes}") long expirationMinutes) {
+      @Value("${app.jwt.expiration-minutes}") long expirationMinutes,
+      @Value("${app.jwt.cache.max-size:10000}") long cacheMaxSize,
+      MeterRegistry registry) {
     this.key = Keys.hmacShaKeyFor(secret.getBytes());
     this.issuer = issuer;
     this.expirationMinutes = expirationMinutes;
+    this.parser = Jwts.parserBuilder()
+        .setSigningKey(key)
+        .requireIssuer(issuer)
+        .build();
+    this.verified = Caffeine.newBuilder()
+        .maximumSize(cacheMaxSize)
+        .expireAfter(new UntilExpiration())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(registry, verified, "jwt.verified");
   }
 
   public String generateToken(String username, Collection<String> roles) {
@@ -43,11 +69,31 @@ public class JwtService {
   }
 
   public Jws<Claims> parseToken(String token) {
-    return Jwts.parserBuilder()
-        .setSigningKey(key)
-        .requireIssuer(issuer)
-        .build()
-        .parseClaimsJws(token);
+    return parser.parseClaimsJws(token);
+  }
+
+  /**
+   * Returns the Authentication for a valid token. A token is verified once and its subject and
+   * authorities kept, keyed by the token's SHA-256, until the token's exp; invalid tokens throw
+   * and are not cached. Each call gets its own Authentication, since callers may set details on it.
+   */
+  public Authentication authenticate(String token) {
+    Verified v = verified.get(digest(token), k -> verify(token));
+    return new UsernamePasswordAuthenticationToken(v.subject(), null, v.authorities());
+  }
+
+  private Verified verify(String token) {
+    Claims claims = parseToken(token).getBody();
+    Date exp = claims.getExpiration();
+    return new Verified(claims.getSubject(), List.copyOf(toAuthorities(extractRoles(claims))),
+        exp == null ? Long.MAX_VALUE : exp.getTime());
+  }
+
+  static List<GrantedAuthority> toAuthorities(Collection<String> roles) {
+    return roles.stream()
+        .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
+        .map(SimpleGrantedAuthority::new)
+        .collect(Collectors.toList());
   }
 
   public List<String> extractRoles(Claims claims) {
@@ -60,4 +106,35 @@ public class JwtService {
     }
     return List.of();
   }
+
+  private static String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private record Verified(String subject, List<GrantedAuthority> authorities, long expiresAtMillis) { }
+
+  /** Drops each entry at its token's exp, so the cache never outlives what the parser would accept. */
+  private static final class UntilExpiration implements Expiry<String, Verified> {
+    @Override
+    public long expireAfterCreate(String key, Verified value, long currentTime) {
+      if (value.expiresAtMillis() == Long.MAX_VALUE) return Long.MAX_VALUE;
+      long remainingMs = value.expiresAtMillis() - System.currentTimeMillis();
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+
+    @Override
+    public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
 }
@@ -0,0 +1,86 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.OrderItem;
+import com.example.shop.web.error.ConflictException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upper bounds on available stock, learnt from reservations that failed for insufficient stock
+ * and from inventory writes. An order asking for more than a product's bound is rejected before
+ * any database work; everything else still goes through the reservation, which stays the only
+ * authority, so the index can turn orders away but never oversell.
+ *
+ * <p>Local releases and inventory writes drop or replace a bound after commit. Stock freed by
+ * other instances is only seen once the bound expires after {@code ttl-ms}, which is therefore
+ * how long a product can be wrongly reported as sold out.
+ */
+@Component
+public class AvailabilityIndex {
+  private final Cache<String, Integer> bounds;
+  private final Counter rejections;
+
+  public AvailabilityIndex(@Value("${app.inventory.availability.max-size:100000}") long maxSize,
+                           @Value("${app.inventory.availability.ttl-ms:1000}") long ttlMs,
+                           MeterRegistry registry) {
+    this.bounds = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofMillis(ttlMs))
+        .build();
+    this.rejections = Counter.builder("shop.orders.availability.rejections")
+        .description("Orders rejected from the availability index without touching the database")
+        .register(registry);
+  }
+
+  /**
+   * @throws ConflictException if a line asks for more than its product is known to have
+   */
+  public void check(List<OrderItem> items) {
+    if (bounds.estimatedSize() == 0) return;
+    Map<String, Integer> requested = new HashMap<>();
+    items.forEach(i -> requested.merge(i.getProductId(), i.getQuantity(), Integer::sum));
+    requested.forEach((productId, quantity) -> {
+      Integer bound = bounds.getIfPresent(productId);
+      if (bound != null && bound < quantity) {
+        rejections.increment();
+        throw new ConflictException("insufficient_stock", "Insufficient stock for product " + productId
+            + " (available at most " + bound + ", requested=" + quantity + ")");
+      }
+    });
+  }
+
+  /** A reservation of {@code requested} just failed for lack of stock, so fewer are available. */
+  public void insufficient(String productId, int requested) {
+    bounds.put(productId, requested - 1);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryUpdated(InventoryUpdatedEvent event) {
+    bounds.put(event.productId(), event.totalStock() - event.reservedStock());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryStriped(InventoryStripedEvent event) {
+    bounds.invalidate(event.productId());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryImported(InventoryImportedEvent event) {
+    bounds.invalidateAll(event.totalStock().keySet());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onReservationsChanged(ReservationsChangedEvent event) {
+    bounds.invalidateAll(event.productIds());
+  }
+}
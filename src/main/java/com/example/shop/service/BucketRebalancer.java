@@ -0,0 +1,50 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.InventoryBucket;
+import com.example.shop.repository.InventoryBucketRepository;
+import com.example.shop.service.reservation.StripeDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.IntSummaryStatistics;
+
+/**
+ * Periodically moves available stock between the buckets of striped products so that random
+ * bucket picks keep succeeding. Skew is checked with a plain read; buckets are only locked for
+ * products that actually need rebalancing.
+ */
+@Component
+public class BucketRebalancer {
+  private static final Logger log = LoggerFactory.getLogger(BucketRebalancer.class);
+
+  private final StripeDirectory stripes;
+  private final InventoryBucketRepository bucketRepo;
+  private final InventoryService inventoryService;
+  private final int maxSkew;
+
+  public BucketRebalancer(StripeDirectory stripes, InventoryBucketRepository bucketRepo,
+                          InventoryService inventoryService,
+                          @Value("${app.inventory.buckets.max-skew:1}") int maxSkew) {
+    this.stripes = stripes;
+    this.bucketRepo = bucketRepo;
+    this.inventoryService = inventoryService;
+    this.maxSkew = maxSkew;
+  }
+
+  @Scheduled(fixedDelayString = "${app.inventory.buckets.rebalance-interval-ms:5000}")
+  public void rebalance() {
+    for (String productId : stripes.stripedProducts()) {
+      IntSummaryStatistics available = bucketRepo.findByProductIdOrderByBucketNo(productId).stream()
+          .mapToInt(InventoryBucket::getAvailableStock).summaryStatistics();
+      if (available.getCount() < 2 || available.getMax() - available.getMin() <= maxSkew) continue;
+      try {
+        inventoryService.rebalanceBuckets(productId);
+      } catch (RuntimeException ex) {
+        log.warn("Failed to rebalance buckets for product {}", productId, ex);
+      }
+    }
+  }
+}
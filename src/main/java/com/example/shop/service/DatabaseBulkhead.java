@@ -0,0 +1,47 @@
+package com.example.shop.service;
+
+import com.example.shop.web.error.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many request threads may be inside a database transaction at once. With virtual
+ * threads there is no request pool to throttle callers, so without this every in-flight
+ * request would queue on Hikari's connection timeout instead of failing fast.
+ *
+ * <p>Permits are acquired before the transaction opens, so callers wrap the transactional
+ * service call rather than being called from inside it.
+ */
+@Component
+public class DatabaseBulkhead {
+  private final Semaphore permits;
+  private final long maxWaitMs;
+
+  public DatabaseBulkhead(@Value("${app.db.bulkhead.max-concurrent:10}") int maxConcurrent,
+                          @Value("${app.db.bulkhead.max-wait-ms:2000}") long maxWaitMs) {
+    this.permits = new Semaphore(maxConcurrent, true);
+    this.maxWaitMs = maxWaitMs;
+  }
+
+  public <T> T call(Supplier<T> work) {
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("Interrupted while waiting for a database slot");
+    }
+    if (!acquired) {
+      throw new ServiceUnavailableException("Database is saturated; try again shortly");
+    }
+    try {
+      return work.get();
+    } finally {
+      permits.release();
+    }
+  }
+}
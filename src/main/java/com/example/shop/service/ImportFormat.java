@@ -0,0 +1,9 @@
+package com.example.shop.service;
+
+/** Body formats accepted by {@link InventoryImportService}. */
+public enum ImportFormat {
+  /** {@code productId,totalStock} per line; a header line is skipped. */
+  CSV,
+  /** One {@code {"productId": "...", "totalStock": n}} object per line. */
+  NDJSON
+}
@@ -0,0 +1,88 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of inventory snapshots keyed by product id. Concurrent misses for
+ * the same product wait on a single load. Entries are dropped after commit by any local write
+ * to that product; the TTL bounds how long changes made by other instances can go unseen.
+ *
+ * <p>Cached values are detached copies and must not be modified by callers.
+ */
+@Component
+public class InventoryCache {
+  private final Cache<String, Inventory> cache;
+
+  public InventoryCache(@Value("${app.inventory.cache.max-size:10000}") long maxSize,
+                        @Value("${app.inventory.cache.ttl-ms:5000}") long ttlMs,
+                        MeterRegistry registry) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofMillis(ttlMs))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(registry, cache, "inventory");
+  }
+
+  /** Returns the cached snapshot or loads it once; exceptions from {@code loader} are not cached. */
+  public Inventory get(String productId, Function<String, Inventory> loader) {
+    return cache.get(productId, id -> copy(loader.apply(id)));
+  }
+
+  /**
+   * Returns snapshots for every known product in {@code productIds}, loading all misses with one
+   * call to {@code loader}. Products the loader does not return are absent and not cached.
+   */
+  public Map<String, Inventory> getAll(Set<String> productIds,
+                                       Function<Set<String>, Map<String, Inventory>> loader) {
+    return cache.getAll(productIds, missing -> {
+      Map<String, Inventory> loaded = loader.apply(Set.copyOf(missing));
+      loaded.replaceAll((id, inv) -> copy(inv));
+      return loaded;
+    });
+  }
+
+  public void invalidate(String productId) {
+    cache.invalidate(productId);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryUpdated(InventoryUpdatedEvent event) {
+    cache.invalidate(event.productId());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryStriped(InventoryStripedEvent event) {
+    cache.invalidate(event.productId());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryImported(InventoryImportedEvent event) {
+    cache.invalidateAll(event.totalStock().keySet());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onReservationsChanged(ReservationsChangedEvent event) {
+    cache.invalidateAll(event.productIds());
+  }
+
+  private static Inventory copy(Inventory inv) {
+    Inventory view = new Inventory();
+    view.setProductId(inv.getProductId());
+    view.setTotalStock(inv.getTotalStock());
+    view.setReservedStock(inv.getReservedStock());
+    return view;
+  }
+}
@@ -0,0 +1,202 @@
+package com.example.shop.service;
+
+import com.example.shop.service.reservation.StripeDirectory;
+import com.example.shop.web.error.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Streams a stock file into the inventory table. Lines are parsed one at a time and upserted in
+ * JDBC batches of {@code batch-size}, each batch in its own transaction, so memory use does not
+ * grow with the file and a bad batch only loses its own rows.
+ *
+ * <p>Only total_stock is written; reserved_stock of existing rows is left as it is. Striped
+ * products go through {@link InventoryService#upsertInventory} so their buckets stay consistent.
+ */
+@Service
+public class InventoryImportService {
+  private static final Logger log = LoggerFactory.getLogger(InventoryImportService.class);
+
+  // A raw nextval takes the top of a pooled block of 50, which Hibernate never hands out itself
+  private static final String UPSERT_SQL =
+      "INSERT INTO inventory (id, product_id, total_stock, reserved_stock) VALUES (nextval('inventory_seq'), ?, ?, 0)"
+          + " ON CONFLICT (product_id) DO UPDATE SET total_stock = EXCLUDED.total_stock, version = inventory.version + 1";
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final InventoryService inventoryService;
+  private final StripeDirectory stripes;
+  private final ApplicationEventPublisher events;
+  private final ObjectMapper mapper;
+  private final int batchSize;
+  private final int maxErrors;
+  private final long progressEvery;
+
+  public InventoryImportService(JdbcTemplate jdbc,
+                                PlatformTransactionManager txManager,
+                                InventoryService inventoryService,
+                                StripeDirectory stripes,
+                                ApplicationEventPublisher events,
+                                ObjectMapper mapper,
+                                @Value("${app.inventory.import.batch-size:1000}") int batchSize,
+                                @Value("${app.inventory.import.max-errors:100}") int maxErrors,
+                                @Value("${app.inventory.import.progress-every:100000}") long progressEvery) {
+    this.jdbc = jdbc;
+    this.tx = new TransactionTemplate(txManager);
+    this.inventoryService = inventoryService;
+    this.stripes = stripes;
+    this.events = events;
+    this.mapper = mapper;
+    this.batchSize = batchSize;
+    this.maxErrors = maxErrors;
+    this.progressEvery = progressEvery;
+  }
+
+  public record RowError(long line, String message) { }
+
+  public record Result(long rowsRead, long rowsUpserted, long rowsFailed, List<RowError> errors, long elapsedMs) { }
+
+  public Result importStock(InputStream body, ImportFormat format) {
+    long started = System.nanoTime();
+    Progress progress = new Progress();
+    // Last value wins within a batch, and ON CONFLICT cannot touch the same row twice in one statement
+    Map<String, Integer> batch = new LinkedHashMap<>();
+    Map<String, Long> batchLines = new HashMap<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16)) {
+      String line;
+      long lineNo = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNo++;
+        if (line.isBlank()) continue;
+        if (lineNo == 1 && format == ImportFormat.CSV && isCsvHeader(line)) continue;
+        progress.read++;
+        try {
+          Row row = format == ImportFormat.CSV ? parseCsv(line) : parseNdjson(line);
+          batch.put(row.productId(), row.totalStock());
+          batchLines.put(row.productId(), lineNo);
+        } catch (BadRequestException ex) {
+          progress.fail(lineNo, ex.getMessage());
+        }
+        if (batch.size() >= batchSize) {
+          flush(batch, batchLines, progress);
+        }
+        if (progress.read % progressEvery == 0) {
+          log.info("Inventory import: {} rows read, {} upserted, {} failed", progress.read, progress.upserted, progress.failed);
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to read inventory import body", ex);
+    }
+    flush(batch, batchLines, progress);
+    long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+    log.info("Inventory import finished in {} ms: {} rows read, {} upserted, {} failed",
+        elapsedMs, progress.read, progress.upserted, progress.failed);
+    return new Result(progress.read, progress.upserted, progress.failed, progress.errors, elapsedMs);
+  }
+
+  private void flush(Map<String, Integer> batch, Map<String, Long> batchLines, Progress progress) {
+    if (batch.isEmpty()) return;
+    List<Object[]> args = new ArrayList<>(batch.size());
+    Map<String, Integer> written = new HashMap<>(batch.size() * 2);
+    for (Map.Entry<String, Integer> e : batch.entrySet()) {
+      if (stripes.isStriped(e.getKey())) {
+        try {
+          inventoryService.upsertInventory(e.getKey(), e.getValue());
+          progress.upserted++;
+        } catch (RuntimeException ex) {
+          progress.fail(batchLines.get(e.getKey()), ex.getMessage());
+        }
+        continue;
+      }
+      args.add(new Object[] { e.getKey(), e.getValue() });
+      written.put(e.getKey(), e.getValue());
+    }
+    if (!args.isEmpty()) {
+      try {
+        tx.executeWithoutResult(s -> {
+          jdbc.batchUpdate(UPSERT_SQL, args);
+          events.publishEvent(new InventoryImportedEvent(written));
+        });
+        progress.upserted += args.size();
+      } catch (RuntimeException ex) {
+        log.warn("Inventory import batch of {} rows failed", args.size(), ex);
+        for (String productId : written.keySet()) {
+          progress.fail(batchLines.get(productId), "Batch failed: " + ex.getMessage());
+        }
+      }
+    }
+    batch.clear();
+    batchLines.clear();
+  }
+
+  private record Row(String productId, int totalStock) { }
+
+  private static boolean isCsvHeader(String line) {
+    int comma = line.indexOf(',');
+    if (comma < 0) return false;
+    String second = line.substring(comma + 1).trim();
+    return !second.isEmpty() && !Character.isDigit(second.charAt(0)) && second.charAt(0) != '-';
+  }
+
+  private static Row parseCsv(String line) {
+    int comma = line.indexOf(',');
+    if (comma < 0) throw new BadRequestException("Expected productId,totalStock");
+    return row(unquote(line.substring(0, comma).trim()), line.substring(comma + 1).trim());
+  }
+
+  private Row parseNdjson(String line) {
+    JsonNode node;
+    try {
+      node = mapper.readTree(line);
+    } catch (JsonProcessingException ex) {
+      throw new BadRequestException("Malformed JSON: " + ex.getOriginalMessage());
+    }
+    JsonNode productId = node.get("productId");
+    JsonNode totalStock = node.get("totalStock");
+    if (productId == null || !productId.isTextual() || totalStock == null) {
+      throw new BadRequestException("Expected productId and totalStock");
+    }
+    return row(productId.asText(), totalStock.asText());
+  }
+
+  private static Row row(String productId, String totalStock) {
+    if (productId.isEmpty()) throw new BadRequestException("Missing productId");
+    int total;
+    try {
+      total = Integer.parseInt(totalStock);
+    } catch (NumberFormatException ex) {
+      throw new BadRequestException("Invalid totalStock for product " + productId + ": " + totalStock);
+    }
+    if (total < 0) throw new BadRequestException("Negative totalStock for product: " + productId);
+    return new Row(productId, total);
+  }
+
+  private static String unquote(String s) {
+    return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
+  }
+
+  private final class Progress {
+    long read;
+    long upserted;
+    long failed;
+    final List<RowError> errors = new ArrayList<>();
+
+    void fail(long line, String message) {
+      failed++;
+      if (errors.size() < maxErrors) errors.add(new RowError(line, message));
+    }
+  }
+}
@@ -0,0 +1,6 @@
+package com.example.shop.service;
+
+import java.util.Map;
+
+/** Published by {@link InventoryImportService} for each committed batch: product id to new total stock. */
+public record InventoryImportedEvent(Map<String, Integer> totalStock) { }
@@ -1,32 +1,207 @@
-
 package com.example.shop.service;
 
 import com.example.shop.domain.Inventory;
+import com.example.shop.domain.InventoryBucket;
+import com.example.shop.repository.InventoryBucketRepository;
 import com.example.shop.repository.InventoryRepository;
+import com.example.shop.service.reservation.StripeDirectory;
+import com.example.shop.web.error.BadRequestException;
 import com.example.shop.web.error.NotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
 
 @Service
 public class InventoryService {
   private final InventoryRepository inventoryRepo;
+  private final InventoryBucketRepository bucketRepo;
+  private final StripeDirectory stripes;
+  private final InventoryCache cache;
+  private final ApplicationEventPublisher events;
+  private final TransactionTemplate loadTx;
+  private final int lookupMaxIds;
+  private final int lookupChunkSize;
 
-  public InventoryService(InventoryRepository inventoryRepo) {
+  public InventoryService(InventoryRepository inventoryRepo, InventoryBucketRepository bucketRepo,
+                          StripeDirectory stripes, InventoryCache cache, ApplicationEventPublisher events,
+                          PlatformTransactionManager txManager,
+                          @Value("${app.inventory.lookup.max-ids:1000}") int lookupMaxIds,
+                          @Value("${app.inventory.lookup.chunk-size:500}") int lookupChunkSize) {
     this.inventoryRepo = inventoryRepo;
+    this.bucketRepo = bucketRepo;
+    this.stripes = stripes;
+    this.cache = cache;
+    this.events = events;
+    this.loadTx = new TransactionTemplate(txManager);
+    this.lookupMaxIds = lookupMaxIds;
+    this.lookupChunkSize = lookupChunkSize;
   }
 
-  @Transactional(readOnly = true)
+  /**
+   * Served from {@link InventoryCache}; a miss reads the inventory row, or the summed buckets of
+   * a striped product. Only a miss opens a transaction, so a cache hit never touches the pool.
+   * Misses read from the primary, not the read replica: writes evict after commit, and a lagging
+   * replica would put the old stock back into the cache for a whole TTL.
+   */
   public Inventory getInventoryByProductId(String productId) {
-    return inventoryRepo.findByProductId(productId)
-        .orElseThrow(() -> new NotFoundException("Product not found: " + productId));
+    return cache.get(productId, id -> loadTx.execute(s -> loadInventory(id)));
+  }
+
+  /**
+   * Bulk variant of {@link #getInventoryByProductId}: cached products are served from memory and
+   * the rest are read with one IN query per {@code chunk-size} ids. Unknown products are simply
+   * absent from the result, which keeps the request order.
+   */
+  public Map<String, Inventory> getInventoryByProductIds(Collection<String> productIds) {
+    Set<String> ids = new LinkedHashSet<>();
+    for (String id : productIds) {
+      if (id != null && !id.isBlank()) ids.add(id.trim());
+    }
+    if (ids.isEmpty()) {
+      throw new BadRequestException("At least one product id is required");
+    }
+    if (ids.size() > lookupMaxIds) {
+      throw new BadRequestException("At most " + lookupMaxIds + " product ids per lookup; got " + ids.size());
+    }
+    Map<String, Inventory> found = cache.getAll(ids, misses -> loadTx.execute(s -> loadInventories(misses)));
+    Map<String, Inventory> ordered = new LinkedHashMap<>();
+    for (String id : ids) {
+      Inventory inv = found.get(id);
+      if (inv != null) ordered.put(id, inv);
+    }
+    return ordered;
+  }
+
+  private Map<String, Inventory> loadInventories(Set<String> productIds) {
+    Map<String, Inventory> result = new HashMap<>();
+    List<String> ids = new ArrayList<>(productIds);
+    Collections.sort(ids);
+    for (int from = 0; from < ids.size(); from += lookupChunkSize) {
+      List<String> chunk = ids.subList(from, Math.min(ids.size(), from + lookupChunkSize));
+      inventoryRepo.findByProductIdIn(chunk).forEach(inv -> result.put(inv.getProductId(), inv));
+      List<String> striped = chunk.stream().filter(id -> result.containsKey(id) && stripes.isStriped(id)).toList();
+      if (striped.isEmpty()) continue;
+      for (Object[] row : bucketRepo.sumByProductIdIn(striped)) {
+        Inventory view = new Inventory();
+        view.setProductId((String) row[0]);
+        view.setTotalStock(((Number) row[1]).intValue());
+        view.setReservedStock(((Number) row[2]).intValue());
+        result.put(view.getProductId(), view);
+      }
+    }
+    return result;
+  }
+
+  private Inventory loadInventory(String productId) {
+    Inventory inv = inventoryRepo.findByProductId(productId)
+        .orElseThrow(() -> new NotFoundException("product", "Product not found: " + productId));
+    if (!stripes.isStriped(productId)) return inv;
+    List<InventoryBucket> buckets = bucketRepo.findByProductIdOrderByBucketNo(productId);
+    return buckets.isEmpty() ? inv : summed(productId, buckets);
   }
 
   @Transactional
   public Inventory upsertInventory(String productId, int totalStock) {
-    Inventory inv = inventoryRepo.findByProductId(productId).orElseGet(Inventory::new);
+    Inventory inv = inventoryRepo.lockByProductId(productId).orElseGet(Inventory::new);
+    List<InventoryBucket> buckets = inv.getId() == null ? List.of() : bucketRepo.lockByProductId(productId);
+    if (!buckets.isEmpty()) {
+      distribute(buckets, totalStock);
+      bucketRepo.saveAll(buckets);
+      Inventory view = summed(productId, buckets);
+      events.publishEvent(new InventoryUpdatedEvent(productId, view.getTotalStock(), view.getReservedStock()));
+      return view;
+    }
     inv.setProductId(productId);
     inv.setTotalStock(totalStock);
     if (inv.getReservedStock() < 0) inv.setReservedStock(0);
-    return inventoryRepo.save(inv);
+    Inventory saved = inventoryRepo.save(inv);
+    events.publishEvent(new InventoryUpdatedEvent(productId, saved.getTotalStock(), saved.getReservedStock()));
+    return saved;
+  }
+
+  /**
+   * Splits a product's stock across {@code bucketCount} rows, or folds it back into the
+   * inventory row when {@code bucketCount} is 1. Reserved stock moves with it.
+   */
+  @Transactional
+  public Inventory stripeInventory(String productId, int bucketCount) {
+    if (bucketCount < 1) {
+      throw new BadRequestException("Bucket count must be positive for product: " + productId);
+    }
+    Inventory inv = inventoryRepo.lockByProductId(productId)
+        .orElseThrow(() -> new NotFoundException("product", "Product not found: " + productId));
+    List<InventoryBucket> current = bucketRepo.lockByProductId(productId);
+    int total = inv.getTotalStock() + current.stream().mapToInt(InventoryBucket::getTotalStock).sum();
+    int reserved = inv.getReservedStock() + current.stream().mapToInt(InventoryBucket::getReservedStock).sum();
+    bucketRepo.deleteByProductId(productId);
+
+    Inventory result;
+    if (bucketCount == 1) {
+      inv.setTotalStock(total);
+      inv.setReservedStock(reserved);
+      result = inventoryRepo.save(inv);
+    } else {
+      // The parent row keeps no stock while striped, so a stale single-row path cannot oversell
+      inv.setTotalStock(0);
+      inv.setReservedStock(0);
+      inventoryRepo.save(inv);
+      List<InventoryBucket> buckets = new ArrayList<>(bucketCount);
+      for (int i = 0; i < bucketCount; i++) {
+        InventoryBucket b = new InventoryBucket(productId, i);
+        b.setReservedStock(reserved / bucketCount + (i < reserved % bucketCount ? 1 : 0));
+        buckets.add(b);
+      }
+      distribute(buckets, total);
+      bucketRepo.saveAll(buckets);
+      result = summed(productId, buckets);
+    }
+    events.publishEvent(new InventoryStripedEvent(productId, bucketCount));
+    events.publishEvent(new InventoryUpdatedEvent(productId, result.getTotalStock(), result.getReservedStock()));
+    return result;
+  }
+
+  /** Evens out available stock between a product's buckets; total and reserved are unchanged. */
+  @Transactional
+  public void rebalanceBuckets(String productId) {
+    List<InventoryBucket> buckets = bucketRepo.lockByProductId(productId);
+    if (buckets.size() < 2) return;
+    distribute(buckets, buckets.stream().mapToInt(InventoryBucket::getTotalStock).sum());
+    bucketRepo.saveAll(buckets);
+  }
+
+  /**
+   * Sets bucket totals so they add up to {@code total} and the available stock is spread as
+   * evenly as possible. If {@code total} is below what is reserved, the shortfall is taken from
+   * the first buckets without driving any total negative.
+   */
+  static void distribute(List<InventoryBucket> buckets, int total) {
+    int n = buckets.size();
+    int available = total - buckets.stream().mapToInt(InventoryBucket::getReservedStock).sum();
+    if (available >= 0) {
+      for (int i = 0; i < n; i++) {
+        InventoryBucket b = buckets.get(i);
+        b.setTotalStock(b.getReservedStock() + available / n + (i < available % n ? 1 : 0));
+      }
+      return;
+    }
+    int shortfall = -available;
+    for (InventoryBucket b : buckets) {
+      int cut = Math.min(shortfall, b.getReservedStock());
+      b.setTotalStock(b.getReservedStock() - cut);
+      shortfall -= cut;
+    }
+  }
+
+  private static Inventory summed(String productId, List<InventoryBucket> buckets) {
+    Inventory view = new Inventory();
+    view.setProductId(productId);
+    view.setTotalStock(buckets.stream().mapToInt(InventoryBucket::getTotalStock).sum());
+    view.setReservedStock(buckets.stream().mapToInt(InventoryBucket::getReservedStock).sum());
+    return view;
   }
 }
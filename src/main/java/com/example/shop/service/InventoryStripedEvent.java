@@ -0,0 +1,4 @@
+package com.example.shop.service;
+
+/** Published when a product's stock is split into (or folded back from) buckets. */
+public record InventoryStripedEvent(String productId, int bucketCount) { }
@@ -0,0 +1,4 @@
+package com.example.shop.service;
+
+/** Published by {@link InventoryService} whenever an inventory row is written through it. */
+public record InventoryUpdatedEvent(String productId, int totalStock, int reservedStock) { }
@@ -0,0 +1,276 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.OrderStatus;
+import com.example.shop.repository.OrderSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cold storage for CONFIRMED and CANCELLED orders, so that {@code orders} and {@code order_items}
+ * only hold recent ones. An archived order is one row of {@code orders_archive} with its items
+ * folded into two arrays. The table is range-partitioned by {@code created_at} month, so old
+ * months can be detached or dropped as a whole.
+ *
+ * <p>An order is only archived once it has not changed for {@code min-age-ms}, so nothing
+ * created after {@code now - min-age-ms} can be here; {@link #mayContain} lets readers skip the
+ * archive for recent ranges. Archived orders are read-only.
+ *
+ * <p>The table and indexes come from the schema migrations; on databases whose schema Hibernate
+ * manages the table is created at start, which runs before the web server does, and the index
+ * on {@code orders} by {@link OrderArchiver} without blocking writes. Monthly partitions are
+ * created ahead of each run in their own short statements, never inside a batch transaction.
+ */
+@Component
+public class OrderArchive implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(OrderArchive.class);
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+  /** Monthly partitions we create; anything else attached by hand (e.g. a DEFAULT partition) is left alone. */
+  private static final Pattern PARTITION_NAME = Pattern.compile("orders_archive_(\\d{4}_\\d{2})");
+
+  private static final String TERMINAL = "status IN ('CONFIRMED', 'CANCELLED')";
+
+  private static final String LOCK_SQL = "SELECT id, created_at FROM orders WHERE " + TERMINAL
+      + " AND updated_at < ? ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+
+  // Both deletes run in one statement, so the order_items foreign key is only checked once both are done
+  private static final String MOVE_SQL = "WITH victims AS (SELECT unnest(?::bigint[]) AS id),"
+      + " items AS (DELETE FROM order_items oi USING victims v WHERE oi.order_id = v.id"
+      + " RETURNING oi.order_id, oi.product_id, oi.quantity),"
+      + " moved AS (DELETE FROM orders o USING victims v WHERE o.id = v.id"
+      + " RETURNING o.id, o.user_id, o.status, o.created_at, o.updated_at)"
+      + " INSERT INTO orders_archive (id, user_id, status, created_at, updated_at, archived_at, product_ids, quantities)"
+      + " SELECT m.id, m.user_id, m.status, m.created_at, m.updated_at, now(),"
+      + " COALESCE(g.product_ids, '{}'), COALESCE(g.quantities, '{}') FROM moved m LEFT JOIN"
+      + " (SELECT order_id, array_agg(product_id ORDER BY product_id) AS product_ids,"
+      + " array_agg(quantity ORDER BY product_id) AS quantities FROM items GROUP BY order_id) g ON g.order_id = m.id";
+
+  private static final String MONTHS_SQL = "SELECT MIN(created_at), MAX(created_at) FROM orders WHERE " + TERMINAL
+      + " AND updated_at < ?";
+
+  private static final String CANDIDATE_INDEX = "idx_orders_terminal_updated";
+
+  // Any fixed key; only instances building the candidate index take it
+  private static final long CANDIDATE_INDEX_LOCK = 0x6f72645f61726368L;
+
+  // Partition DDL gives up rather than queue for its lock, holding up readers behind it
+  private static final int DDL_LOCK_TIMEOUT_MS = 2000;
+
+  private static final String PAGE_SQL = "SELECT id, status, created_at, updated_at FROM orders_archive"
+      + " WHERE user_id = ? AND (created_at, id) < (?, ?)";
+
+  private final JdbcTemplate jdbc;
+  private final Duration minAge;
+  private final Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+  private volatile boolean candidateIndexed;
+  private volatile boolean running;
+
+  public OrderArchive(JdbcTemplate jdbc, @Value("${app.orders.archive.min-age-ms:7776000000}") long minAgeMs) {
+    this.jdbc = jdbc;
+    this.minAge = Duration.ofMillis(minAgeMs);
+  }
+
+  @Override
+  public void start() {
+    // Checked first because CREATE INDEX takes its table lock even when the index already exists
+    if (missing("orders_archive")) {
+      jdbc.execute("CREATE TABLE IF NOT EXISTS orders_archive ("
+          + " id BIGINT NOT NULL, user_id BIGINT NOT NULL, status VARCHAR(32) NOT NULL,"
+          + " created_at TIMESTAMPTZ NOT NULL, updated_at TIMESTAMPTZ NOT NULL, archived_at TIMESTAMPTZ NOT NULL,"
+          + " product_ids VARCHAR(255)[] NOT NULL, quantities INTEGER[] NOT NULL,"
+          + " PRIMARY KEY (id, created_at)) PARTITION BY RANGE (created_at)");
+    }
+    if (missing("idx_orders_archive_user_created")) {
+      jdbc.execute("CREATE INDEX IF NOT EXISTS idx_orders_archive_user_created ON orders_archive (user_id, created_at, id)");
+    }
+    jdbc.query("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+        + " WHERE i.inhparent = 'orders_archive'::regclass", rs -> {
+          Matcher m = PARTITION_NAME.matcher(rs.getString(1));
+          if (m.matches()) partitions.add(YearMonth.parse(m.group(1), PARTITION_SUFFIX));
+        });
+    running = true;
+  }
+
+  @Override
+  public void stop() { running = false; }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  @Override
+  public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+
+  /** False when every order created at or after {@code createdAt} is certainly still in the hot tables. */
+  public boolean mayContain(OffsetDateTime createdAt) {
+    return createdAt.isBefore(OffsetDateTime.now().minus(minAge));
+  }
+
+  public OffsetDateTime cutoff() { return OffsetDateTime.now().minus(minAge); }
+
+  public Optional<OrderView> findView(Long id) {
+    return jdbc.query("SELECT id, user_id, status, created_at, updated_at, product_ids, quantities"
+        + " FROM orders_archive WHERE id = ?", (rs, n) -> view(rs), id).stream().findFirst();
+  }
+
+  /** Same keyset page as the hot-table queries, newest first; {@code status} may be null. */
+  public List<OrderSummary> findPageByUser(Long userId, OrderStatus status, OffsetDateTime createdAt, Long id, int limit) {
+    if (status == null) {
+      return jdbc.query(PAGE_SQL + " ORDER BY created_at DESC, id DESC LIMIT ?", (rs, n) -> summary(rs),
+          userId, createdAt, id, limit);
+    }
+    return jdbc.query(PAGE_SQL + " AND status = ? ORDER BY created_at DESC, id DESC LIMIT ?", (rs, n) -> summary(rs),
+        userId, createdAt, id, status.name(), limit);
+  }
+
+  /**
+   * Builds the index the archiver finds its candidates with, where no migration did. It is built
+   * concurrently, outside any transaction, so writes to {@code orders} go on meanwhile; a build
+   * that failed halfway is dropped and started over. Returns false while another instance is
+   * building it.
+   */
+  public boolean ensureCandidateIndex() {
+    if (candidateIndexed) return true;
+    candidateIndexed = Boolean.TRUE.equals(jdbc.execute((ConnectionCallback<Boolean>) con -> {
+      try (Statement st = con.createStatement()) {
+        if (!lock(st, "pg_try_advisory_lock")) return false;
+        try {
+          Boolean valid;
+          try (ResultSet rs = st.executeQuery("SELECT indisvalid FROM pg_index"
+              + " WHERE indexrelid = to_regclass('" + CANDIDATE_INDEX + "')")) {
+            valid = rs.next() ? rs.getBoolean(1) : null;
+          }
+          if (Boolean.TRUE.equals(valid)) return true;
+          if (valid != null) {
+            log.warn("Dropping {} left invalid by an interrupted build", CANDIDATE_INDEX);
+            st.execute("DROP INDEX CONCURRENTLY IF EXISTS " + CANDIDATE_INDEX);
+          }
+          log.info("Building {} on orders", CANDIDATE_INDEX);
+          st.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + CANDIDATE_INDEX + " ON orders (updated_at) WHERE " + TERMINAL);
+          return true;
+        } finally {
+          lock(st, "pg_advisory_unlock");
+        }
+      }
+    }));
+    return candidateIndexed;
+  }
+
+  /**
+   * Creates the month partitions for every order {@link #archiveBatch} may move before
+   * {@code cutoff}. Call it outside a transaction: each partition is its own short statement, so
+   * the lock it takes on {@code orders_archive} is not held for a whole batch. A partition another
+   * instance created first counts as created; one that could not get its lock in time is tried
+   * again on the next call, and its orders wait until then.
+   */
+  public void ensurePartitions(OffsetDateTime cutoff) {
+    List<YearMonth> months = new ArrayList<>();
+    jdbc.query(MONTHS_SQL, rs -> {
+      OffsetDateTime first = rs.getObject(1, OffsetDateTime.class);
+      if (first == null) return;
+      YearMonth last = month(rs.getObject(2, OffsetDateTime.class));
+      for (YearMonth m = month(first); !m.isAfter(last); m = m.plusMonths(1)) months.add(m);
+    }, cutoff);
+    for (YearMonth m : months) {
+      try {
+        createPartition(m);
+      } catch (DataAccessException ex) {
+        log.warn("Could not create archive partition for {}; retrying next run: {}", m, ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Moves up to {@code batchSize} terminal orders last changed before {@code cutoff} into the
+   * archive and returns how many moved. Must run inside a transaction; rows locked by others, and
+   * rows whose partition {@link #ensurePartitions} has not created, are left for a later batch.
+   */
+  public int archiveBatch(OffsetDateTime cutoff, int batchSize) {
+    List<Long> ids = new ArrayList<>(batchSize);
+    jdbc.query(LOCK_SQL, rs -> {
+      if (partitions.contains(month(rs.getObject(2, OffsetDateTime.class)))) ids.add(rs.getLong(1));
+    }, cutoff, batchSize);
+    if (ids.isEmpty()) return 0;
+    return jdbc.update(con -> {
+      PreparedStatement ps = con.prepareStatement(MOVE_SQL);
+      ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+      return ps;
+    });
+  }
+
+  private void createPartition(YearMonth month) {
+    if (partitions.contains(month)) return;
+    String name = "orders_archive_" + month.format(PARTITION_SUFFIX);
+    // Checked first because CREATE TABLE ... PARTITION OF locks the parent even when the partition exists
+    if (missing(name)) {
+      String from = month.atDay(1) + " 00:00:00+00";
+      String to = month.plusMonths(1).atDay(1) + " 00:00:00+00";
+      try {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+          try (Statement st = con.createStatement()) {
+            st.execute("SET lock_timeout = " + DDL_LOCK_TIMEOUT_MS);
+            try {
+              st.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF orders_archive"
+                  + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            } finally {
+              st.execute("RESET lock_timeout");
+            }
+          }
+          return null;
+        });
+      } catch (DataAccessException ex) {
+        // IF NOT EXISTS does not cover two instances creating it at the same moment
+        if (missing(name)) throw ex;
+      }
+    }
+    partitions.add(month);
+  }
+
+  private static boolean lock(Statement st, String function) throws SQLException {
+    try (ResultSet rs = st.executeQuery("SELECT " + function + "(" + CANDIDATE_INDEX_LOCK + ")")) {
+      rs.next();
+      return rs.getBoolean(1);
+    }
+  }
+
+  private static YearMonth month(OffsetDateTime at) {
+    return YearMonth.from(at.withOffsetSameInstant(ZoneOffset.UTC));
+  }
+
+  private boolean missing(String relation) {
+    return jdbc.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, relation);
+  }
+
+  private static OrderSummary summary(ResultSet rs) throws SQLException {
+    return new OrderSummary(rs.getLong(1), OrderStatus.valueOf(rs.getString(2)),
+        rs.getObject(3, OffsetDateTime.class), rs.getObject(4, OffsetDateTime.class));
+  }
+
+  private static OrderView view(ResultSet rs) throws SQLException {
+    String[] productIds = (String[]) rs.getArray(6).getArray();
+    Integer[] quantities = (Integer[]) rs.getArray(7).getArray();
+    List<OrderItem> items = new ArrayList<>(productIds.length);
+    for (int i = 0; i < productIds.length; i++) items.add(new OrderItem(productIds[i], quantities[i]));
+    return new OrderView(rs.getLong(1), rs.getLong(2), OrderStatus.valueOf(rs.getString(3)), items,
+        rs.getObject(4, OffsetDateTime.class), rs.getObject(5, OffsetDateTime.class));
+  }
+}
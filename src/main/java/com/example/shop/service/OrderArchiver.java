@@ -0,0 +1,66 @@
+package com.example.shop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Periodically moves CONFIRMED and CANCELLED orders older than {@code min-age-ms} into the
+ * {@link OrderArchive}, one transaction per batch. Instances can run it side by side: each batch
+ * skips rows another one has locked. Partitions are created before the batches, and a run is
+ * skipped while another instance is still building the archiver's index on {@code orders}.
+ *
+ * <p>Off unless {@code app.orders.archive.enabled} is set, since the first run moves every old
+ * finished order out of {@code orders}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.archive.enabled", havingValue = "true")
+public class OrderArchiver {
+  private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+  private final OrderArchive archive;
+  private final TransactionTemplate tx;
+  private final int batchSize;
+  private final int maxBatches;
+  private final Counter archived;
+
+  public OrderArchiver(OrderArchive archive, PlatformTransactionManager txManager, MeterRegistry registry,
+                       @Value("${app.orders.archive.batch-size:1000}") int batchSize,
+                       @Value("${app.orders.archive.max-batches-per-run:100}") int maxBatches) {
+    this.archive = archive;
+    this.tx = new TransactionTemplate(txManager);
+    this.batchSize = batchSize;
+    this.maxBatches = maxBatches;
+    this.archived = Counter.builder("shop.orders.archived")
+        .description("Terminal orders moved out of the hot tables")
+        .register(registry);
+  }
+
+  @Scheduled(fixedDelayString = "${app.orders.archive.interval-ms:3600000}",
+             initialDelayString = "${app.orders.archive.interval-ms:3600000}")
+  public void run() {
+    if (!archive.ensureCandidateIndex()) {
+      log.info("Another instance is building the archive candidate index; skipping this run");
+      return;
+    }
+    OffsetDateTime cutoff = archive.cutoff();
+    archive.ensurePartitions(cutoff);
+    int total = 0;
+    for (int batch = 0; batch < maxBatches; batch++) {
+      Integer moved = tx.execute(s -> archive.archiveBatch(cutoff, batchSize));
+      total += moved;
+      if (moved < batchSize) break;
+    }
+    archived.increment(total);
+    if (total > 0) log.info("Archived {} orders last changed before {}", total, cutoff);
+  }
+}
@@ -0,0 +1,29 @@
+package com.example.shop.service;
+
+import com.example.shop.web.error.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/** Opaque keyset position in a user's order listing: the last (createdAt, id) returned. */
+public record OrderCursor(OffsetDateTime createdAt, long id) {
+  /** Sorts after every real order. */
+  static final OrderCursor START = new OrderCursor(OffsetDateTime.parse("9999-12-31T23:59:59Z"), Long.MAX_VALUE);
+
+  public String encode() {
+    String raw = createdAt + "|" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static OrderCursor decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int bar = raw.indexOf('|');
+      return new OrderCursor(OffsetDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+      throw new BadRequestException("Invalid cursor: " + token);
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.IdempotencyRecord;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.IdempotencyRepository;
+import com.example.shop.web.error.BadRequestException;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates order creation by Idempotency-Key. Outcomes are answered from memory for the
+ * retention window, with the idempotency_keys table as the backstop: the order's transaction
+ * claims the key row before it touches inventory, so an order and its key commit or roll back
+ * together, and a key that is already stored (after a restart, or by another instance) is
+ * replayed without reserving anything.
+ *
+ * <p>A duplicate arriving while the first request is still running waits for its outcome rather
+ * than reserving stock again. Client errors (400, 404, 409) are stored and replayed; anything
+ * else, such as a saturated database, is not, so the client can simply retry.
+ */
+@Component
+public class OrderIdempotency {
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private final IdempotencyRepository repo;
+  private final DatabaseBulkhead bulkhead;
+  private final TransactionTemplate tx;
+  private final Duration retention;
+  private final Cache<String, Outcome> completed;
+  private final ConcurrentMap<String, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+
+  public OrderIdempotency(IdempotencyRepository repo, DatabaseBulkhead bulkhead, PlatformTransactionManager txManager,
+                          @Value("${app.orders.idempotency.retention-ms:86400000}") long retentionMs,
+                          @Value("${app.orders.idempotency.max-entries:100000}") long maxEntries) {
+    this.repo = repo;
+    this.bulkhead = bulkhead;
+    this.tx = new TransactionTemplate(txManager);
+    this.retention = Duration.ofMillis(retentionMs);
+    this.completed = Caffeine.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(retention)
+        .build();
+  }
+
+  /** {@code created} is set only when this call created the order; a replay carries just the id. */
+  public record Result(Long orderId, Order created) {
+    public boolean replayed() { return created == null; }
+  }
+
+  private record Outcome(String fingerprint, Long orderId, Integer errorStatus, String errorMessage) {
+    static Outcome of(IdempotencyRecord r) {
+      return new Outcome(r.getFingerprint(), r.getOrderId(), r.getErrorStatus(), r.getErrorMessage());
+    }
+  }
+
+  /**
+   * Runs {@code create} once per key. It is called inside a transaction, under the
+   * {@link DatabaseBulkhead}, and must join that transaction.
+   */
+  public Result createOrder(String key, Long userId, List<OrderItem> items, Supplier<Order> create) {
+    if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+      throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+    }
+    String fingerprint = fingerprint(userId, items);
+    Outcome known = completed.getIfPresent(key);
+    if (known != null) return replay(known, fingerprint);
+
+    CompletableFuture<Outcome> mine = new CompletableFuture<>();
+    CompletableFuture<Outcome> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) return replay(await(running), fingerprint);
+    try {
+      // The previous holder may have finished between the two lookups
+      known = completed.getIfPresent(key);
+      if (known != null) {
+        mine.complete(known);
+        return replay(known, fingerprint);
+      }
+      Order[] created = new Order[1];
+      Outcome outcome = execute(key, fingerprint, create, created);
+      completed.put(key, outcome);
+      mine.complete(outcome);
+      return created[0] != null ? new Result(created[0].getId(), created[0]) : replay(outcome, fingerprint);
+    } catch (RuntimeException ex) {
+      mine.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      inFlight.remove(key, mine);
+    }
+  }
+
+  /** Drops stored keys older than the retention window; the in-memory copies expire on their own. */
+  @Scheduled(fixedDelayString = "${app.orders.idempotency.purge-interval-ms:3600000}")
+  public void purgeExpired() {
+    OffsetDateTime cutoff = OffsetDateTime.now().minus(retention);
+    bulkhead.call(() -> tx.execute(s -> repo.deleteCreatedBefore(cutoff)));
+  }
+
+  private Outcome execute(String key, String fingerprint, Supplier<Order> create, Order[] created) {
+    try {
+      Order order = bulkhead.call(() -> tx.execute(s -> {
+        if (repo.claim(key, fingerprint) == 0) return null;
+        Order o = create.get();
+        repo.recordOrder(key, o.getId());
+        return o;
+      }));
+      if (order == null) return stored(key, null);
+      created[0] = order;
+      return new Outcome(fingerprint, order.getId(), null, null);
+    } catch (BadRequestException | NotFoundException | ConflictException ex) {
+      int status = ex instanceof BadRequestException ? 400 : ex instanceof NotFoundException ? 404 : 409;
+      try {
+        bulkhead.call(() -> tx.execute(s -> {
+          repo.insertError(key, fingerprint, status, ex.getMessage());
+          return null;
+        }));
+      } catch (DataIntegrityViolationException dup) {
+        return stored(key, dup);
+      }
+      return new Outcome(fingerprint, null, status, ex.getMessage());
+    }
+  }
+
+  /** The key was committed by another request, possibly on another instance. */
+  private Outcome stored(String key, DataIntegrityViolationException cause) {
+    return bulkhead.call(() -> repo.findById(key)).map(Outcome::of).orElseThrow(() -> cause != null ? cause
+        : new IllegalStateException("Idempotency-Key " + key + " was claimed but is no longer stored"));
+  }
+
+  private static Result replay(Outcome outcome, String fingerprint) {
+    if (!outcome.fingerprint().equals(fingerprint)) {
+      throw new ConflictException("idempotency_key", "Idempotency-Key was already used for a different order request");
+    }
+    if (outcome.orderId() != null) return new Result(outcome.orderId(), null);
+    String msg = outcome.errorMessage();
+    throw switch (outcome.errorStatus()) {
+      case 400 -> new BadRequestException(msg);
+      case 404 -> new NotFoundException("replayed", msg);
+      default -> new ConflictException("replayed", msg);
+    };
+  }
+
+  private static Outcome await(CompletableFuture<Outcome> running) {
+    try {
+      return running.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) throw cause;
+      throw ex;
+    }
+  }
+
+  private static String fingerprint(Long userId, List<OrderItem> items) {
+    StringBuilder sb = new StringBuilder().append(userId);
+    if (items != null) {
+      for (OrderItem i : items) sb.append('|').append(i.getProductId()).append(':').append(i.getQuantity());
+    }
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
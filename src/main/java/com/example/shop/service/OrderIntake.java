@@ -0,0 +1,160 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.service.reservation.InventoryReservations;
+import com.example.shop.service.reservation.ReservationMode;
+import com.example.shop.service.reservation.StripeDirectory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Group-commit stage in front of {@link OrderService#createOrder}. Concurrent submissions are
+ * collected for up to {@code max-wait-ms} or {@code max-batch-size} entries and created by
+ * {@link OrderService#createOrderBatch} in a single transaction, so one commit is paid per
+ * batch instead of per order.
+ *
+ * <p>Orders touching striped products skip the batch and go through the regular path. Batches
+ * reserve under plain row locks, so the intake only runs with the PESSIMISTIC reservation mode;
+ * the other modes' lock budgets, conditional updates and retries would be bypassed.
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.intake.enabled", havingValue = "true")
+public class OrderIntake implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(OrderIntake.class);
+
+  private final OrderService orderService;
+  private final StripeDirectory stripes;
+  private final BlockingQueue<PendingOrder> queue;
+  private final int maxBatchSize;
+  private final long maxWaitNanos;
+  private final List<Thread> workers = new ArrayList<>();
+  private volatile boolean running;
+
+  public OrderIntake(OrderService orderService,
+                     StripeDirectory stripes,
+                     InventoryReservations reservations,
+                     @Value("${app.orders.intake.max-batch-size:64}") int maxBatchSize,
+                     @Value("${app.orders.intake.max-wait-ms:5}") long maxWaitMs,
+                     @Value("${app.orders.intake.queue-capacity:10000}") int queueCapacity,
+                     @Value("${app.orders.intake.workers:2}") int workerCount,
+                     MeterRegistry registry) {
+    if (reservations.getMode() != ReservationMode.PESSIMISTIC) {
+      throw new IllegalStateException("Order intake batching requires reservation mode PESSIMISTIC, not "
+          + reservations.getMode());
+    }
+    this.orderService = orderService;
+    this.stripes = stripes;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    Gauge.builder("shop.orders.intake.queue.size", queue, BlockingQueue::size)
+        .description("Orders waiting to be picked up by an intake worker")
+        .register(registry);
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    for (int i = 0; i < workerCount; i++) {
+      Thread t = new Thread(this::drainLoop, "order-intake-" + i);
+      t.setDaemon(true);
+      workers.add(t);
+    }
+  }
+
+  public CompletableFuture<Order> submit(Long userId, List<OrderItem> items) {
+    if (items != null && items.stream().anyMatch(i -> stripes.isStriped(i.getProductId()))) {
+      return createDirectly(userId, items);
+    }
+    PendingOrder pending = new PendingOrder(userId, items);
+    if (!running || !queue.offer(pending)) {
+      return createDirectly(userId, items);
+    }
+    return pending.getResult();
+  }
+
+  private CompletableFuture<Order> createDirectly(Long userId, List<OrderItem> items) {
+    try {
+      return CompletableFuture.completedFuture(orderService.createOrder(userId, items));
+    } catch (RuntimeException ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    workers.forEach(Thread::start);
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    for (Thread t : workers) {
+      try {
+        t.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  private void drainLoop() {
+    while (running || !queue.isEmpty()) {
+      try {
+        List<PendingOrder> batch = nextBatch();
+        if (!batch.isEmpty()) process(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /** Blocks for the first entry, then collects more until the batch is full or the window closes. */
+  private List<PendingOrder> nextBatch() throws InterruptedException {
+    List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+    PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+    if (first == null) return batch;
+    batch.add(first);
+    long deadline = System.nanoTime() + maxWaitNanos;
+    while (batch.size() < maxBatchSize) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) break;
+      PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) break;
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  private void process(List<PendingOrder> batch) {
+    try {
+      orderService.createOrderBatch(batch);
+    } catch (RuntimeException ex) {
+      // The shared transaction rolled back: retry the surviving entries one by one
+      log.warn("Order batch of {} failed; retrying individually", batch.size(), ex);
+      for (PendingOrder p : batch) {
+        if (p.isRejected()) continue;
+        p.reset();
+        try {
+          p.getResult().complete(orderService.createOrder(p.getUserId(), p.getItems()));
+        } catch (RuntimeException err) {
+          p.getResult().completeExceptionally(err);
+        }
+      }
+      batch.stream().filter(PendingOrder::isRejected).forEach(PendingOrder::complete);
+      return;
+    }
+    batch.forEach(PendingOrder::complete);
+  }
+}
@@ -0,0 +1,97 @@
+package com.example.shop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the order and reservation hot paths. Every meter is resolved once and cached, so
+ * recording is a map lookup plus a timer update. Per-SKU meters carry no histogram and only the
+ * first {@code max-sku-tags} products get their own tag; the rest share {@code sku="other"} so a
+ * large catalogue cannot blow up the number of series.
+ */
+@Component
+public class OrderMetrics {
+  static final String OTHER_SKU = "other";
+
+  /**
+   * Phases of {@link OrderService#createOrder}, in execution order. {@code COMMIT} includes the
+   * flush, so it carries the stock updates and order inserts that Hibernate batches until then.
+   */
+  public enum Phase {
+    USER_LOOKUP, RESERVE, ORDER_INSERT, COMMIT;
+
+    final String tag = name().toLowerCase();
+  }
+
+  private final MeterRegistry registry;
+  private final int maxSkuTags;
+  private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+  private final Map<String, Timer> lockWaits = new ConcurrentHashMap<>();
+  private final Map<String, Counter> conflicts = new ConcurrentHashMap<>();
+  private final Map<String, Counter> optimisticRetries = new ConcurrentHashMap<>();
+  private final Map<String, Counter> optimisticFallbacks = new ConcurrentHashMap<>();
+
+  public OrderMetrics(MeterRegistry registry,
+                      @Value("${app.metrics.max-sku-tags:200}") int maxSkuTags) {
+    this.registry = registry;
+    this.maxSkuTags = maxSkuTags;
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, Timer.builder("shop.orders.create.phase")
+          .description("Time spent in each phase of order creation")
+          .tag("phase", phase.tag)
+          .publishPercentileHistogram()
+          .register(registry));
+    }
+  }
+
+  public Timer phase(Phase phase) { return phases.get(phase); }
+
+  public <T> T time(Phase phase, Supplier<T> step) { return phases.get(phase).record(step); }
+
+  public void time(Phase phase, Runnable step) { phases.get(phase).record(step); }
+
+  /** Lock acquisition plus stock check for one product line; dominated by row lock wait. */
+  public Timer lockWait(String productId) {
+    return lockWaits.computeIfAbsent(skuTag(productId, lockWaits), sku -> Timer.builder("shop.inventory.lock.wait")
+        .description("Time to lock and check one product during reservation")
+        .tag("sku", sku)
+        .register(registry));
+  }
+
+  public void conflict(String productId) {
+    conflicts.computeIfAbsent(skuTag(productId, conflicts), sku -> Counter.builder("shop.inventory.conflicts")
+        .description("Reservations rejected for insufficient stock")
+        .tag("sku", sku)
+        .register(registry)).increment();
+  }
+
+  /** A version-checked update that lost to another write and has to re-read. */
+  public void optimisticRetry(String productId) {
+    optimisticRetries.computeIfAbsent(skuTag(productId, optimisticRetries), sku -> Counter
+        .builder("shop.inventory.optimistic.retries")
+        .description("Version-checked inventory updates that lost a race and were retried")
+        .tag("sku", sku)
+        .register(registry)).increment();
+  }
+
+  /** A line that ran out of optimistic attempts and took the row lock instead. */
+  public void optimisticFallback(String productId) {
+    optimisticFallbacks.computeIfAbsent(skuTag(productId, optimisticFallbacks), sku -> Counter
+        .builder("shop.inventory.optimistic.fallbacks")
+        .description("Reservations that exhausted optimistic attempts and used a row lock")
+        .tag("sku", sku)
+        .register(registry)).increment();
+  }
+
+  private String skuTag(String productId, Map<String, ?> seen) {
+    return seen.containsKey(productId) || seen.size() < maxSkuTags ? productId : OTHER_SKU;
+  }
+}
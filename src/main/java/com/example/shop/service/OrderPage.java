@@ -0,0 +1,7 @@
+package com.example.shop.service;
+
+import com.example.shop.repository.OrderSummary;
+import java.util.List;
+
+/** One page of a user's orders; {@code nextCursor} is null on the last page. */
+public record OrderPage(List<OrderSummary> items, String nextCursor) { }
@@ -2,126 +2,388 @@
 package com.example.shop.service;
 
 import com.example.shop.domain.*;
-import com.example.shop.repository.InventoryRepository;
 import com.example.shop.repository.OrderRepository;
+import com.example.shop.repository.OrderRow;
+import com.example.shop.repository.OrderSummary;
 import com.example.shop.repository.UserRepository;
+import com.example.shop.service.OrderMetrics.Phase;
+import com.example.shop.service.reservation.InventoryReservations;
 import com.example.shop.web.error.BadRequestException;
 import com.example.shop.web.error.ConflictException;
 import com.example.shop.web.error.NotFoundException;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-@EnableAsync
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 @Service
 public class OrderService {
+  static final int MAX_PAGE_SIZE = 100;
+  static final int MAX_BULK_IDS = 5000;
+
   private final OrderRepository orderRepo;
   private final UserRepository userRepo;
-  private final InventoryRepository inventoryRepo;
+  private final InventoryReservations reservations;
+  private final ApplicationEventPublisher events;
+  private final OrderMetrics metrics;
+  private final OrderArchive archive;
 
-  public OrderService(OrderRepository orderRepo, UserRepository userRepo, InventoryRepository inventoryRepo) {
+  public OrderService(OrderRepository orderRepo, UserRepository userRepo, InventoryReservations reservations,
+                      ApplicationEventPublisher events, OrderMetrics metrics, OrderArchive archive) {
     this.orderRepo = orderRepo;
     this.userRepo = userRepo;
-    this.inventoryRepo = inventoryRepo;
+    this.reservations = reservations;
+    this.events = events;
+    this.metrics = metrics;
+    this.archive = archive;
   }
 
-  /** Create order and atomically reserve inventory (pessimistic locking). */
-  @Async
+  /**
+   * Create order and atomically reserve inventory using the configured reservation mode.
+   * Each step is timed in {@link OrderMetrics}; the batched writes are flushed at commit as
+   * usual, so they count towards the commit phase.
+   */
   @Transactional
-  public CompletableFuture<Order> createOrder(Long userId, List<OrderItem> items) {
-    if (items == null || items.isEmpty()) {
-      throw new BadRequestException("Order must contain at least one item");
-    }
-
-    User user = userRepo.findById(userId)
-        .orElseThrow(() -> new NotFoundException("User not found: " + userId));
+  public Order createOrder(Long userId, List<OrderItem> items) {
+    validateItems(items);
 
-    // Acquire locks in deterministic order to avoid deadlocks
-    List<OrderItem> sorted = items.stream()
-        .sorted(Comparator.comparing(OrderItem::getProductId))
-        .collect(Collectors.toList());
+    User user = metrics.time(Phase.USER_LOOKUP, () -> userRepo.findById(userId)
+        .orElseThrow(() -> new NotFoundException("user", "User not found: " + userId)));
 
-    Map<String, Inventory> locked = new HashMap<>();
+    // Lock & reserve (in deterministic product order to avoid deadlocks)
+    metrics.time(Phase.RESERVE, () -> reservations.reserve(items));
+    events.publishEvent(new ReservationsChangedEvent(productIds(items)));
 
-    // Lock & reserve
-    for (OrderItem item : sorted) {
-      Inventory inv = inventoryRepo.lockByProductId(item.getProductId())
-          .orElseThrow(() -> new NotFoundException("Inventory not found for product: " + item.getProductId()));
+    // Persist order as PENDING, in the same transaction as the reservation
+    Order order = metrics.time(Phase.ORDER_INSERT, () -> {
+      Order saved = orderRepo.save(newPendingOrder(user, items));
+      events.publishEvent(new OrdersPlacedEvent(Collections.singletonList(saved.getId())));
+      events.publishEvent(statusChanged(saved));
+      return saved;
+    });
+    timeCommit();
+    return order;
+  }
 
-      int available = inv.getTotalStock() - inv.getReservedStock();
-      if (item.getQuantity() <= 0) {
-        throw new BadRequestException("Quantity must be positive for product: " + item.getProductId());
-      }
-      if (available < item.getQuantity()) {
-        throw new ConflictException("Insufficient stock for product " + item.getProductId()
-            + " (available=" + available + ", requested=" + item.getQuantity() + ")");
+  private void timeCommit() {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+    long start = System.nanoTime();
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_COMMITTED) {
+          metrics.phase(Phase.COMMIT).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
       }
+    });
+  }
 
-      inv.setReservedStock(inv.getReservedStock() + item.getQuantity());
-      inventoryRepo.save(inv);
-      locked.put(item.getProductId(), inv);
+  /**
+   * Create a batch of orders in one transaction. Each entry records its own outcome, so an
+   * order that fails validation or runs out of stock does not affect the others.
+   */
+  @Transactional
+  public void createOrderBatch(List<PendingOrder> batch) {
+    List<PendingOrder> valid = new ArrayList<>(batch.size());
+    for (PendingOrder p : batch) {
+      try {
+        validateItems(p.getItems());
+        valid.add(p);
+      } catch (BadRequestException ex) {
+        p.reject(ex);
+      }
     }
 
-    // Persist order as PENDING
-    Order order = new Order();
-    order.setUser(user);
-    order.setItems(new ArrayList<>(items));
-    order.setStatus(OrderStatus.PENDING);
-    order.touch();
+    Map<Long, User> users = new HashMap<>();
+    Set<Long> userIds = new HashSet<>();
+    valid.forEach(p -> userIds.add(p.getUserId()));
+    userRepo.findAllById(userIds).forEach(u -> users.put(u.getId(), u));
+    valid.removeIf(p -> {
+      if (users.containsKey(p.getUserId())) return false;
+      p.reject(new NotFoundException("user", "User not found: " + p.getUserId()));
+      return true;
+    });
 
-    return CompletableFuture.supplyAsync(() -> orderRepo.save(order));
+    List<RuntimeException> failures = reservations.reserveEach(valid.stream().map(PendingOrder::getItems).toList());
+
+    List<Order> orders = new ArrayList<>(valid.size());
+    for (int i = 0; i < valid.size(); i++) {
+      PendingOrder p = valid.get(i);
+      if (failures.get(i) != null) {
+        p.reject(failures.get(i));
+        continue;
+      }
+      Order order = newPendingOrder(users.get(p.getUserId()), p.getItems());
+      orders.add(order);
+      p.accept(order);
+    }
+    orderRepo.saveAll(orders);
+    if (!orders.isEmpty()) {
+      Set<String> touched = new HashSet<>();
+      orders.forEach(o -> touched.addAll(productIds(o.getItems())));
+      events.publishEvent(new ReservationsChangedEvent(touched));
+      events.publishEvent(new OrdersPlacedEvent(orders.stream().map(Order::getId).toList()));
+      orders.forEach(o -> events.publishEvent(statusChanged(o)));
+    }
   }
 
   /** Confirm a PENDING order. */
   @Transactional
   public Order confirmOrder(Long orderId) {
-    Order order = orderRepo.findById(orderId)
-        .orElseThrow(() -> new NotFoundException("Order not found: " + orderId));
+    Order order = orderRepo.lockById(orderId)
+        .orElseThrow(() -> new NotFoundException("order", "Order not found: " + orderId));
 
     if (order.getStatus() != OrderStatus.PENDING) {
-      throw new ConflictException("Order not in PENDING state; current: " + order.getStatus());
+      throw new ConflictException("order_state", "Order not in PENDING state; current: " + order.getStatus());
     }
 
     order.setStatus(OrderStatus.CONFIRMED);
     order.touch();
+    events.publishEvent(statusChanged(order));
     return orderRepo.save(order);
   }
 
   /** Cancel a PENDING order and release inventory reservations. */
   @Transactional
   public Order cancelOrder(Long orderId) {
-    Order order = orderRepo.findById(orderId)
-        .orElseThrow(() -> new NotFoundException("Order not found: " + orderId));
+    Order order = orderRepo.lockById(orderId)
+        .orElseThrow(() -> new NotFoundException("order", "Order not found: " + orderId));
 
     if (order.getStatus() != OrderStatus.PENDING) {
-        throw new ConflictException("Only PENDING orders can be cancelled; current: " + order.getStatus());
+        throw new ConflictException("order_state", "Only PENDING orders can be cancelled; current: " + order.getStatus());
     }
 
-    List<OrderItem> sorted = order.getItems().stream()
-        .sorted(Comparator.comparing(OrderItem::getProductId)).toList();
-
-    for (OrderItem item : sorted) {
-      Inventory inv = inventoryRepo.lockByProductId(item.getProductId())
-          .orElseThrow(() -> new NotFoundException("Inventory not found for product: " + item.getProductId()));
-
-      int newReserved = inv.getReservedStock() - item.getQuantity();
-      if (newReserved < 0) newReserved = 0;
-      inv.setReservedStock(newReserved);
-      inventoryRepo.save(inv);
-    }
+    reservations.release(order.getItems());
+    events.publishEvent(new ReservationsChangedEvent(productIds(order.getItems())));
 
     order.setStatus(OrderStatus.CANCELLED);
     order.touch();
+    events.publishEvent(statusChanged(order));
     return orderRepo.save(order);
   }
 
+  /**
+   * Confirms whichever of {@code orderIds} are still PENDING with a single
+   * {@code UPDATE ... RETURNING id}, in one transaction. No order entity is loaded; the items
+   * for the outbox events are read with one join afterwards.
+   */
+  @Transactional
+  public List<OrderTransition> confirmOrders(Collection<Long> orderIds) {
+    Set<Long> ids = bulkIds(orderIds);
+    OffsetDateTime now = OffsetDateTime.now();
+    List<Long> confirmed = orderRepo.confirmPending(ids, now);
+    if (!confirmed.isEmpty()) statusChanges(confirmed, OrderStatus.CONFIRMED, now).forEach(events::publishEvent);
+    return transitions(ids, confirmed, OrderStatus.CONFIRMED);
+  }
+
+  /**
+   * Cancels whichever of {@code orderIds} are still PENDING, in one transaction. Quantities are
+   * summed per product across all the orders and released in a single pass in product order.
+   */
+  @Transactional
+  public List<OrderTransition> cancelOrders(Collection<Long> orderIds) {
+    Set<Long> ids = bulkIds(orderIds);
+    return transitions(ids, cancelPending(ids), OrderStatus.CANCELLED);
+  }
+
+  /**
+   * Cancels whichever of {@code orderIds} are still PENDING. Their lines are merged and released
+   * in product order, as {@link #cancelOrder} does, so a batch costs one lock query, one read and
+   * one status update on top of the releases. Returns how many orders were cancelled.
+   */
+  @Transactional
+  public int expireOrders(Collection<Long> orderIds) {
+    return orderIds.isEmpty() ? 0 : cancelPending(orderIds).size();
+  }
+
+  private List<Long> cancelPending(Collection<Long> orderIds) {
+    List<Long> pending = orderRepo.lockPendingIds(orderIds);
+    if (pending.isEmpty()) return pending;
+    OffsetDateTime now = OffsetDateTime.now();
+    List<OrderStatusChangedEvent> changes = statusChanges(pending, OrderStatus.CANCELLED, now);
+    List<OrderItem> lines = new ArrayList<>();
+    changes.forEach(c -> lines.addAll(c.items()));
+    reservations.release(lines);
+    events.publishEvent(new ReservationsChangedEvent(productIds(lines)));
+    orderRepo.updateStatus(pending, OrderStatus.CANCELLED, now);
+    changes.forEach(events::publishEvent);
+    return pending;
+  }
+
+  /** Reads the items of {@code orderIds} with one join and builds their status change events. */
+  private List<OrderStatusChangedEvent> statusChanges(Collection<Long> orderIds, OrderStatus status, OffsetDateTime now) {
+    Map<Long, List<OrderItem>> itemsByOrder = new LinkedHashMap<>();
+    Map<Long, Long> userByOrder = new HashMap<>();
+    for (OrderRow row : orderRepo.findRowsByIdIn(orderIds)) {
+      List<OrderItem> orderItems = itemsByOrder.computeIfAbsent(row.id(), id -> new ArrayList<>());
+      userByOrder.put(row.id(), row.userId());
+      if (row.productId() != null) orderItems.add(new OrderItem(row.productId(), row.quantity()));
+    }
+    List<OrderStatusChangedEvent> changes = new ArrayList<>(itemsByOrder.size());
+    itemsByOrder.forEach((id, orderItems) ->
+        changes.add(new OrderStatusChangedEvent(id, userByOrder.get(id), status, orderItems, now)));
+    return changes;
+  }
+
+  private static Set<Long> bulkIds(Collection<Long> orderIds) {
+    if (orderIds == null || orderIds.isEmpty()) {
+      throw new BadRequestException("At least one order id is required");
+    }
+    Set<Long> ids = new LinkedHashSet<>(orderIds);
+    if (ids.contains(null)) throw new BadRequestException("Order ids must not be null");
+    if (ids.size() > MAX_BULK_IDS) {
+      throw new BadRequestException("At most " + MAX_BULK_IDS + " order ids per request; got " + ids.size());
+    }
+    return ids;
+  }
+
+  /** Outcomes in request order; ids that were not applied are looked up once to tell why. */
+  private List<OrderTransition> transitions(Set<Long> ids, Collection<Long> applied, OrderStatus target) {
+    Set<Long> done = new HashSet<>(applied);
+    Map<Long, OrderStatus> current = new HashMap<>();
+    if (done.size() < ids.size()) {
+      List<Long> rest = ids.stream().filter(id -> !done.contains(id)).toList();
+      orderRepo.findSummariesByIdIn(rest).forEach(o -> current.put(o.id(), o.status()));
+    }
+    List<OrderTransition> result = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      if (done.contains(id)) {
+        result.add(new OrderTransition(id, OrderTransition.Outcome.APPLIED, target));
+      } else if (current.containsKey(id)) {
+        result.add(new OrderTransition(id, OrderTransition.Outcome.INVALID_STATE, current.get(id)));
+      } else {
+        result.add(new OrderTransition(id, OrderTransition.Outcome.NOT_FOUND, null));
+      }
+    }
+    return result;
+  }
+
   @Transactional(readOnly = true)
   public Order getOrderById(Long id) {
     return orderRepo.findById(id)
-        .orElseThrow(() -> new NotFoundException("Order not found: " + id));
+        .orElseThrow(() -> new NotFoundException("order", "Order not found: " + id));
+  }
+
+  /**
+   * Served from a single join projected straight into {@link OrderView}; no entity is managed.
+   * Orders no longer in the hot tables are looked up in the {@link OrderArchive}.
+   */
+  @Transactional(readOnly = true)
+  public OrderView getOrderView(Long id) {
+    return orderView(id);
+  }
+
+  /**
+   * {@link #getOrderView} read from the primary, for an order the caller knows was just created:
+   * a replica may not have replayed it yet.
+   */
+  @Transactional
+  public OrderView getOrderViewFromPrimary(Long id) {
+    return orderView(id);
+  }
+
+  private OrderView orderView(Long id) {
+    List<OrderRow> rows = orderRepo.findRowsById(id);
+    if (rows.isEmpty()) {
+      return archive.findView(id).orElseThrow(() -> new NotFoundException("order", "Order not found: " + id));
+    }
+    OrderRow head = rows.get(0);
+    List<OrderItem> items = new ArrayList<>(rows.size());
+    for (OrderRow row : rows) {
+      if (row.productId() != null) items.add(new OrderItem(row.productId(), row.quantity()));
+    }
+    return new OrderView(head.id(), head.userId(), head.status(), items, head.createdAt(), head.updatedAt());
+  }
+
+  /** Whether user {@code userId} is the account signed in as {@code email}; false for unknown ids. */
+  @Transactional(readOnly = true)
+  public boolean isUser(Long userId, String email) {
+    return userRepo.findEmailById(userId).map(e -> e.equalsIgnoreCase(email)).orElse(false);
+  }
+
+  /**
+   * One page of a user's orders, newest first, resuming after the {@code after} cursor. Each page
+   * is a range scan of (user_id[, status], created_at, id), so the cost does not grow with the
+   * user's order history the way OFFSET or loading {@code User.getOrders()} does. The archive is
+   * only read, and merged in, when the page reaches back past what it can hold.
+   */
+  @Transactional(readOnly = true)
+  public OrderPage listUserOrders(Long userId, String status, String after, int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    OrderStatus wanted = parseStatus(status);
+    boolean firstPage = after == null || after.isBlank();
+    OrderCursor from = firstPage ? OrderCursor.START : OrderCursor.decode(after);
+    Limit fetch = Limit.of(limit + 1);
+    List<OrderSummary> rows = wanted == null
+        ? orderRepo.findPageByUser(userId, from.createdAt(), from.id(), fetch)
+        : orderRepo.findPageByUserAndStatus(userId, wanted, from.createdAt(), from.id(), fetch);
+    if (rows.size() <= limit || archive.mayContain(rows.get(limit).createdAt())) {
+      rows = newestFirst(rows, archive.findPageByUser(userId, wanted, from.createdAt(), from.id(), limit + 1), limit + 1);
+    }
+    if (rows.isEmpty() && firstPage && !userRepo.existsById(userId)) {
+      throw new NotFoundException("user", "User not found: " + userId);
+    }
+    if (rows.size() <= limit) return new OrderPage(rows, null);
+    OrderSummary last = rows.get(limit - 1);
+    return new OrderPage(List.copyOf(rows.subList(0, limit)), new OrderCursor(last.createdAt(), last.id()).encode());
+  }
+
+  /** Merges two newest-first pages; an order seen in both while being archived is kept once. */
+  private static List<OrderSummary> newestFirst(List<OrderSummary> hot, List<OrderSummary> archived, int limit) {
+    if (archived.isEmpty()) return hot;
+    Comparator<OrderSummary> order = Comparator.comparing(OrderSummary::createdAt)
+        .thenComparing(OrderSummary::id).reversed();
+    Map<Long, OrderSummary> merged = new LinkedHashMap<>();
+    Stream.concat(hot.stream(), archived.stream()).sorted(order).forEach(o -> merged.putIfAbsent(o.id(), o));
+    return merged.values().stream().limit(limit).toList();
+  }
+
+  private static OrderStatus parseStatus(String status) {
+    if (status == null || status.isBlank()) return null;
+    try {
+      return OrderStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException ex) {
+      throw new BadRequestException("Unknown order status: " + status);
+    }
+  }
+
+  private static OrderStatusChangedEvent statusChanged(Order order) {
+    return new OrderStatusChangedEvent(order.getId(), order.getUser().getId(), order.getStatus(),
+        List.copyOf(order.getItems()), order.getUpdatedAt());
+  }
+
+  private static void validateItems(List<OrderItem> items) {
+    if (items == null || items.isEmpty()) {
+      throw new BadRequestException("Order must contain at least one item");
+    }
+    for (OrderItem item : items) {
+      if (item.getQuantity() <= 0) {
+        throw new BadRequestException("Quantity must be positive for product: " + item.getProductId());
+      }
+    }
+  }
+
+  private static Set<String> productIds(List<OrderItem> items) {
+    Set<String> ids = new HashSet<>();
+    for (OrderItem item : items) ids.add(item.getProductId());
+    return ids;
+  }
+
+  private static Order newPendingOrder(User user, List<OrderItem> items) {
+    Order order = new Order();
+    order.setUser(user);
+    order.setItems(new ArrayList<>(items));
+    order.setStatus(OrderStatus.PENDING);
+    order.touch();
+    return order;
   }
 }
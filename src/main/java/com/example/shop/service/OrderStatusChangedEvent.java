@@ -0,0 +1,13 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.OrderStatus;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Published by {@link OrderService} inside the transaction that creates an order or changes its
+ * status; {@code items} are the order's lines.
+ */
+public record OrderStatusChangedEvent(Long orderId, Long userId, OrderStatus status, List<OrderItem> items,
+                                      OffsetDateTime occurredAt) { }
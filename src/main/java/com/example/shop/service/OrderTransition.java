@@ -0,0 +1,8 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.OrderStatus;
+
+/** Per-order result of a bulk confirm or cancel; {@code status} is null when the order does not exist. */
+public record OrderTransition(Long id, Outcome outcome, OrderStatus status) {
+  public enum Outcome { APPLIED, NOT_FOUND, INVALID_STATE }
+}
@@ -0,0 +1,10 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.OrderStatus;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/** Read-only snapshot of an order, built without loading the entity. */
+public record OrderView(Long id, Long userId, OrderStatus status, List<OrderItem> items,
+                        OffsetDateTime createdAt, OffsetDateTime updatedAt) { }
@@ -0,0 +1,6 @@
+package com.example.shop.service;
+
+import java.util.List;
+
+/** Published by {@link OrderService} when new PENDING orders are persisted. */
+public record OrdersPlacedEvent(List<Long> orderIds) { }
@@ -0,0 +1,41 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A createOrder call waiting in {@link OrderIntake}. The batch records an outcome for each
+ * entry; callers are only completed once the batch transaction has finished.
+ */
+public class PendingOrder {
+  private final Long userId;
+  private final List<OrderItem> items;
+  private final CompletableFuture<Order> result = new CompletableFuture<>();
+  private Order order;
+  private RuntimeException error;
+
+  public PendingOrder(Long userId, List<OrderItem> items) {
+    this.userId = userId;
+    this.items = items;
+  }
+
+  public Long getUserId() { return userId; }
+  public List<OrderItem> getItems() { return items; }
+  public CompletableFuture<Order> getResult() { return result; }
+  public boolean isRejected() { return error != null; }
+
+  public void accept(Order order) { this.order = order; }
+  public void reject(RuntimeException error) { this.error = error; }
+
+  /** Forgets an acceptance whose transaction rolled back; rejections stand. */
+  void reset() { this.order = null; }
+
+  void complete() {
+    if (error != null) result.completeExceptionally(error);
+    else if (order != null) result.complete(order);
+    else result.completeExceptionally(new IllegalStateException("Order was not processed"));
+  }
+}
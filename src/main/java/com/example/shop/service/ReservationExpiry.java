@@ -0,0 +1,147 @@
+package com.example.shop.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cancels PENDING orders once they are older than {@code reservation-ttl-ms}, releasing their
+ * stock. Deadlines live in a {@link TimingWheel}, filled from the orders table at startup and
+ * then from {@link OrdersPlacedEvent}, so a tick only looks at orders that are actually due.
+ *
+ * <p>Confirmed or cancelled orders stay in the wheel and are skipped when they come due. Off unless
+ * {@code app.orders.expiry.enabled} is set, since the first start would cancel every old PENDING
+ * order, including ones still waiting for payment.
+ *
+ * <p>When a batch fails, its orders are retried one per transaction with a growing delay, so a
+ * single order that cannot be cancelled does not hold up the rest; after {@code max-attempts}
+ * failures it is left PENDING and logged.
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.expiry.enabled", havingValue = "true")
+public class ReservationExpiry implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(ReservationExpiry.class);
+
+  private final OrderService orderService;
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate scanTx;
+  private final TimingWheel wheel;
+  private final long ttlMs;
+  private final int batchSize;
+  private final int maxPerTick;
+  private final long tickMs;
+  private final int maxAttempts;
+  // Orders whose last cancel failed, by failure count; only touched by expireDue
+  private final Map<Long, Integer> failures = new HashMap<>();
+  private volatile boolean running;
+
+  public ReservationExpiry(OrderService orderService,
+                           DataSource dataSource,
+                           PlatformTransactionManager txManager,
+                           @Value("${app.orders.expiry.reservation-ttl-ms:900000}") long ttlMs,
+                           @Value("${app.orders.expiry.tick-ms:1000}") long tickMs,
+                           @Value("${app.orders.expiry.batch-size:200}") int batchSize,
+                           @Value("${app.orders.expiry.max-per-tick:10000}") int maxPerTick,
+                           @Value("${app.orders.expiry.max-attempts:10}") int maxAttempts) {
+    this.orderService = orderService;
+    // Streams the startup scan instead of materializing every pending order
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.jdbc.setFetchSize(10_000);
+    // Not read-only, so it runs on the primary: a lagging replica could miss recent orders
+    this.scanTx = new TransactionTemplate(txManager);
+    this.wheel = new TimingWheel(tickMs, System.currentTimeMillis());
+    this.ttlMs = ttlMs;
+    this.batchSize = batchSize;
+    this.maxPerTick = maxPerTick;
+    this.tickMs = tickMs;
+    this.maxAttempts = maxAttempts;
+  }
+
+  @Override
+  public void start() {
+    scanTx.executeWithoutResult(s -> jdbc.query(
+        "SELECT id, created_at FROM orders WHERE status = 'PENDING'",
+        rs -> { wheel.add(rs.getLong(1), rs.getTimestamp(2).getTime() + ttlMs); }));
+    running = true;
+    log.info("Reservation expiry tracking {} pending orders with a TTL of {} ms", wheel.size(), ttlMs);
+  }
+
+  @Override
+  public void stop() { running = false; }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOrdersPlaced(OrdersPlacedEvent event) {
+    long deadline = System.currentTimeMillis() + ttlMs;
+    event.orderIds().forEach(id -> wheel.add(id, deadline));
+  }
+
+  /**
+   * Cancels due orders in batches; orders that failed before go one per transaction. A tick runs
+   * at most {@code max-per-tick / batch-size} transactions and leaves the rest for the next one.
+   */
+  @Scheduled(fixedDelayString = "${app.orders.expiry.tick-ms:1000}")
+  public void expireDue() {
+    if (!running) return;
+    long now = System.currentTimeMillis();
+    List<Long> fresh = new ArrayList<>();
+    List<Long> retries = new ArrayList<>();
+    for (Long id : wheel.advance(now)) (failures.containsKey(id) ? retries : fresh).add(id);
+    int maxTransactions = Math.max(1, maxPerTick / batchSize);
+    int transactions = 0;
+    int expired = 0;
+    for (Long id : retries) {
+      if (transactions++ >= maxTransactions) {
+        wheel.add(id, now);
+        continue;
+      }
+      expired += expire(List.of(id), now);
+    }
+    for (int from = 0; from < fresh.size(); from += batchSize) {
+      List<Long> batch = fresh.subList(from, Math.min(fresh.size(), from + batchSize));
+      if (transactions++ >= maxTransactions) {
+        batch.forEach(id -> wheel.add(id, now));
+        continue;
+      }
+      expired += expire(batch, now);
+    }
+    if (expired > 0) log.info("Expired {} pending orders", expired);
+  }
+
+  private int expire(List<Long> ids, long now) {
+    try {
+      int expired = orderService.expireOrders(ids);
+      if (!failures.isEmpty()) ids.forEach(failures::remove);
+      return expired;
+    } catch (RuntimeException ex) {
+      if (ids.size() > 1) log.warn("Failed to expire {} orders; retrying them one by one", ids.size(), ex);
+      for (Long id : ids) {
+        int attempts = failures.merge(id, 1, Integer::sum);
+        if (attempts >= maxAttempts) {
+          failures.remove(id);
+          log.error("Giving up on expiring order {} after {} attempts; it stays PENDING", id, attempts, ex);
+        } else {
+          if (ids.size() == 1) log.warn("Failed to expire order {} (attempt {}): {}", id, attempts, ex.toString());
+          wheel.add(id, now + (tickMs << Math.min(attempts, 6)));
+        }
+      }
+      return 0;
+    }
+  }
+}
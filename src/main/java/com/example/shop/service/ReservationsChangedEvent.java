@@ -0,0 +1,6 @@
+package com.example.shop.service;
+
+import java.util.Set;
+
+/** Published by {@link OrderService} when orders reserve or release stock for these products. */
+public record ReservationsChangedEvent(Set<String> productIds) { }
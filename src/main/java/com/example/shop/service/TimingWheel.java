@@ -0,0 +1,106 @@
+package com.example.shop.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of long ids. Four levels of 512 slots cover 512^4 ticks; an entry
+ * sits in the lowest level whose span still reaches its deadline and cascades down as the wheel
+ * turns, so adding is O(1) and each tick only touches the slots that come due.
+ *
+ * <p>Deadlines are rounded up to whole ticks; anything beyond the top level waits in an overflow
+ * list that is re-placed each time the top level wraps.
+ */
+final class TimingWheel {
+  private static final int BITS = 9;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+
+  private final long tickMs;
+  private final long originMs;
+  private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+  private final Bucket overflow = new Bucket();
+  private final Bucket due = new Bucket();
+  private long currentTick;
+  private int size;
+
+  TimingWheel(long tickMs, long originMs) {
+    if (tickMs <= 0) throw new IllegalArgumentException("Tick must be positive: " + tickMs);
+    this.tickMs = tickMs;
+    this.originMs = originMs;
+    for (Bucket[] level : wheels) {
+      for (int i = 0; i < SLOTS; i++) level[i] = new Bucket();
+    }
+  }
+
+  synchronized void add(long id, long deadlineMs) {
+    place(id, Math.ceilDiv(deadlineMs - originMs, tickMs));
+    size++;
+  }
+
+  /** Turns the wheel up to {@code nowMs} and returns every id whose deadline has passed. */
+  synchronized List<Long> advance(long nowMs) {
+    long target = Math.floorDiv(nowMs - originMs, tickMs);
+    List<Long> expired = new ArrayList<>();
+    while (currentTick < target) {
+      currentTick++;
+      if ((currentTick & ((1L << (BITS * LEVELS)) - 1)) == 0) cascade(overflow);
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+          cascade(wheels[level][(int) ((currentTick >>> (BITS * level)) & MASK)]);
+        }
+      }
+      wheels[0][(int) (currentTick & MASK)].drainIds(expired);
+    }
+    due.drainIds(expired);
+    size -= expired.size();
+    return expired;
+  }
+
+  synchronized int size() { return size; }
+
+  private void place(long id, long tick) {
+    if (tick <= currentTick) {
+      due.add(id, tick);
+      return;
+    }
+    for (int level = 0; level < LEVELS; level++) {
+      int above = BITS * (level + 1);
+      if ((tick >>> above) == (currentTick >>> above)) {
+        wheels[level][(int) ((tick >>> (BITS * level)) & MASK)].add(id, tick);
+        return;
+      }
+    }
+    overflow.add(id, tick);
+  }
+
+  private void cascade(Bucket bucket) {
+    if (bucket.len == 0) return;
+    long[] entries = bucket.data;
+    int len = bucket.len;
+    bucket.data = null;
+    bucket.len = 0;
+    for (int i = 0; i < len; i += 2) place(entries[i], entries[i + 1]);
+  }
+
+  /** Flat (id, tick) pairs, so millions of entries cost no per-entry objects. */
+  private static final class Bucket {
+    long[] data;
+    int len;
+
+    void add(long id, long tick) {
+      if (data == null) data = new long[8];
+      else if (len == data.length) data = Arrays.copyOf(data, len * 2);
+      data[len++] = id;
+      data[len++] = tick;
+    }
+
+    void drainIds(List<Long> out) {
+      for (int i = 0; i < len; i += 2) out.add(data[i]);
+      data = null;
+      len = 0;
+    }
+  }
+}
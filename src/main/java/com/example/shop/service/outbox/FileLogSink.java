@@ -0,0 +1,103 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.OutboxEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Default {@link OutboxSink}: an append-only log of newline-delimited JSON, split into segments
+ * named after the first event id they hold ({@code 00000000000000000042.ndjson}), so consumers
+ * can tail the newest file and resume from the last line they read. Events of one order appear
+ * in the order of the changes; across orders ids only roughly increase, since transactions may
+ * commit out of id order. A segment name is therefore bumped past the previous one when needed,
+ * so names always sort in write order. Each batch is one write followed by an fsync. Segments
+ * beyond {@code maxSegments} are deleted oldest first.
+ *
+ * <p>A line looks like {@code {"id":42,"type":"ORDER_CONFIRMED","orderId":7,"event":{...}}}.
+ */
+public class FileLogSink implements OutboxSink, Closeable {
+  private static final String SUFFIX = ".ndjson";
+
+  private final Path dir;
+  private final long segmentBytes;
+  private final int maxSegments;
+  private FileChannel current;
+  private long currentStart = -1;
+
+  public FileLogSink(Path dir, long segmentBytes, int maxSegments) throws IOException {
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = maxSegments;
+    Files.createDirectories(dir);
+    List<Path> segments = segments();
+    if (!segments.isEmpty()) {
+      Path last = segments.get(segments.size() - 1);
+      current = openForAppend(last);
+      currentStart = Long.parseLong(last.getFileName().toString().replace(SUFFIX, ""));
+    }
+  }
+
+  @Override
+  public synchronized void publish(List<OutboxEvent> events) throws IOException {
+    if (events.isEmpty()) return;
+    StringBuilder sb = new StringBuilder(events.size() * 256);
+    for (OutboxEvent e : events) {
+      sb.append("{\"id\":").append(e.getId())
+          .append(",\"type\":\"").append(e.getType())
+          .append("\",\"orderId\":").append(e.getOrderId())
+          .append(",\"event\":").append(e.getPayload())
+          .append("}\n");
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+    if (current == null || (current.size() > 0 && current.size() + bytes.remaining() > segmentBytes)) {
+      roll(events.get(0).getId());
+    }
+    while (bytes.hasRemaining()) current.write(bytes);
+    current.force(false);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (current != null) current.close();
+  }
+
+  private void roll(long firstId) throws IOException {
+    if (current != null) current.close();
+    currentStart = Math.max(firstId, currentStart + 1);
+    current = FileChannel.open(dir.resolve(String.format("%020d", currentStart) + SUFFIX),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    List<Path> segments = segments();
+    for (int i = 0; i < segments.size() - maxSegments; i++) Files.deleteIfExists(segments.get(i));
+  }
+
+  /** Reopens a segment, dropping a line torn by a crash mid-write. */
+  private static FileChannel openForAppend(Path file) throws IOException {
+    FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long end = ch.size();
+    ByteBuffer one = ByteBuffer.allocate(1);
+    while (end > 0) {
+      one.clear();
+      ch.read(one, end - 1);
+      if (one.get(0) == '\n') break;
+      end--;
+    }
+    ch.truncate(end);
+    ch.position(end);
+    return ch;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+    }
+  }
+}
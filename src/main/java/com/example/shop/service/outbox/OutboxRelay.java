@@ -0,0 +1,78 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.OutboxEvent;
+import com.example.shop.repository.OutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Moves outbox rows to the {@link OutboxSink} in id order, {@code batch-size} at a time. Each
+ * batch is locked, published and deleted in one transaction, so a failed publish leaves the rows
+ * for the next run. Only one relay works at a time across all instances: each batch first takes
+ * a transaction-scoped advisory lock, and the others skip their run while it is held. Two relays
+ * taking turns within the outbox could otherwise publish an order's later event before an earlier
+ * one the other relay still holds.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+  private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+  // Any fixed key; shared by every instance
+  static final long RELAY_LOCK = 0x6f7574626f78L;
+
+  private final OutboxRepository outboxRepo;
+  private final OutboxSink sink;
+  private final TransactionTemplate tx;
+  private final int batchSize;
+
+  public OutboxRelay(OutboxRepository outboxRepo, OutboxSink sink, PlatformTransactionManager txManager,
+                     @Value("${app.outbox.relay.batch-size:500}") int batchSize) {
+    this.outboxRepo = outboxRepo;
+    this.sink = sink;
+    this.tx = new TransactionTemplate(txManager);
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Drains until a short batch shows the outbox is empty, or another instance is relaying;
+   * returns how many events were relayed.
+   */
+  @Scheduled(fixedDelayString = "${app.outbox.relay.interval-ms:500}")
+  public int relay() {
+    int total = 0;
+    try {
+      int relayed;
+      do {
+        relayed = tx.execute(s -> relayBatch());
+        total += relayed;
+      } while (relayed == batchSize);
+    } catch (RuntimeException ex) {
+      log.warn("Outbox relay stopped after {} events; will retry", total, ex);
+    }
+    return total;
+  }
+
+  private int relayBatch() {
+    if (!outboxRepo.tryLock(RELAY_LOCK)) return 0;
+    List<OutboxEvent> batch = outboxRepo.lockBatch(batchSize);
+    if (batch.isEmpty()) return 0;
+    try {
+      sink.publish(batch);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Outbox sink failed for " + batch.size() + " events", ex);
+    }
+    outboxRepo.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+    return batch.size();
+  }
+}
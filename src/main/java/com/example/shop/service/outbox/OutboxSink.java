@@ -0,0 +1,16 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.OutboxEvent;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination for relayed order events. {@link #publish} must only return once the batch is
+ * durable at the destination; the relay deletes the rows afterwards. Delivery is at-least-once,
+ * so a batch may be published again if the relay fails before its delete commits.
+ *
+ * <p>Declare a bean of this type, e.g. a broker producer, to replace the default {@link FileLogSink}.
+ */
+public interface OutboxSink {
+  void publish(List<OutboxEvent> events) throws IOException;
+}
@@ -0,0 +1,33 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.OutboxEvent;
+import com.example.shop.repository.OutboxRepository;
+import com.example.shop.service.OrderStatusChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records each {@link OrderStatusChangedEvent} as an outbox row. The listener is synchronous, so
+ * the row is flushed with the order's own inserts and commits or rolls back with them.
+ */
+@Component
+public class OutboxWriter {
+  private final OutboxRepository outboxRepo;
+  private final ObjectMapper mapper;
+
+  public OutboxWriter(OutboxRepository outboxRepo, ObjectMapper mapper) {
+    this.outboxRepo = outboxRepo;
+    this.mapper = mapper;
+  }
+
+  @EventListener
+  public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+    try {
+      outboxRepo.save(new OutboxEvent(event.orderId(), "ORDER_" + event.status(), mapper.writeValueAsString(event)));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Cannot serialize order event for order " + event.orderId(), ex);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import com.example.shop.web.error.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PessimisticReservationStrategy} with a budget on lock waits. Each product first takes a
+ * {@link ProductLockLimiter} slot, which fails fast with 429 when too many requests already queue
+ * on that row; the lock itself is then requested under {@code lock_timeout}, and running out of
+ * it fails with a retryable 503 instead of holding the connection.
+ *
+ * <p>Postgres applies {@code lock_timeout} to each lock wait on its own, so the budget is tracked
+ * per transaction here: every lock gets what the earlier lines of the order left of it.
+ */
+@Component
+public class BoundedWaitReservationStrategy implements ReservationStrategy {
+  private static final Object BUDGET = new Object();
+
+  /** Lock wait left to the current transaction, and the timeout last sent for it. */
+  private static final class Budget {
+    long remainingNanos;
+    long appliedMs = -1;
+    Budget(long remainingNanos) { this.remainingNanos = remainingNanos; }
+  }
+
+  private final InventoryRepository inventoryRepo;
+  private final ProductLockLimiter limiter;
+  private final JdbcTemplate jdbc;
+  private final long lockWaitMs;
+  private final long retryAfterSeconds;
+
+  public BoundedWaitReservationStrategy(InventoryRepository inventoryRepo, ProductLockLimiter limiter, JdbcTemplate jdbc,
+                                        @Value("${app.inventory.lock-budget.wait-ms:200}") long lockWaitMs,
+                                        @Value("${app.inventory.lock-budget.retry-after-seconds:1}") long retryAfterSeconds) {
+    this.inventoryRepo = inventoryRepo;
+    this.limiter = limiter;
+    this.jdbc = jdbc;
+    this.lockWaitMs = lockWaitMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  public ReservationMode mode() { return ReservationMode.BOUNDED_WAIT; }
+
+  @Override
+  public void reserve(OrderItem item) {
+    Inventory inv = lock(item.getProductId());
+
+    int available = inv.getTotalStock() - inv.getReservedStock();
+    if (available < item.getQuantity()) {
+      throw new ConflictException("insufficient_stock", "Insufficient stock for product " + item.getProductId()
+          + " (available=" + available + ", requested=" + item.getQuantity() + ")");
+    }
+
+    inv.setReservedStock(inv.getReservedStock() + item.getQuantity());
+    inventoryRepo.save(inv);
+  }
+
+  @Override
+  public void release(OrderItem item) {
+    Inventory inv = lock(item.getProductId());
+    inv.setReservedStock(Math.max(0, inv.getReservedStock() - item.getQuantity()));
+    inventoryRepo.save(inv);
+  }
+
+  private Inventory lock(String productId) {
+    limiter.acquire(productId);
+    Budget budget = applyLockTimeout();
+    long start = System.nanoTime();
+    try {
+      return inventoryRepo.lockByProductId(productId)
+          .orElseThrow(() -> new NotFoundException("product", "Inventory not found for product: " + productId));
+    } catch (PessimisticLockingFailureException ex) {
+      throw new ServiceUnavailableException("Product " + productId + " is busy; try again shortly", retryAfterSeconds);
+    } finally {
+      budget.remainingNanos -= System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * SET LOCAL lasts until commit, so it is only sent again once waits have used up at least a
+   * millisecond of the budget; uncontended lines reuse it. A zero budget would switch the timeout
+   * off in Postgres, so it is raised to 1 ms, close to NOWAIT.
+   */
+  private Budget applyLockTimeout() {
+    Budget budget = (Budget) TransactionSynchronizationManager.getResource(BUDGET);
+    if (budget == null) {
+      budget = new Budget(TimeUnit.MILLISECONDS.toNanos(lockWaitMs));
+      TransactionSynchronizationManager.bindResource(BUDGET, budget);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(BUDGET);
+        }
+      });
+    }
+    long timeoutMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(budget.remainingNanos));
+    if (timeoutMs != budget.appliedMs) {
+      jdbc.execute("SET LOCAL lock_timeout = '" + timeoutMs + "ms'");
+      budget.appliedMs = timeoutMs;
+    }
+    return budget;
+  }
+}
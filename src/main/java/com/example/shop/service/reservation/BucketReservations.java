@@ -0,0 +1,104 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.InventoryBucket;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryBucketRepository;
+import com.example.shop.web.error.ConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reserves stock for striped products. A line first tries a single guarded UPDATE on a random
+ * bucket, then on the others in turn; only when no single bucket can cover it are all buckets
+ * locked (in bucket order) and the quantity taken from several of them.
+ */
+@Component
+public class BucketReservations {
+  private static final Logger log = LoggerFactory.getLogger(BucketReservations.class);
+
+  private final InventoryBucketRepository bucketRepo;
+  private final StripeDirectory directory;
+
+  public BucketReservations(InventoryBucketRepository bucketRepo, StripeDirectory directory) {
+    this.bucketRepo = bucketRepo;
+    this.directory = directory;
+  }
+
+  /** @return false if the product is not striped and the caller should use the inventory row */
+  public boolean reserve(OrderItem item) {
+    String productId = item.getProductId();
+    int quantity = item.getQuantity();
+    int buckets = directory.bucketCount(productId);
+    if (buckets < 2) return false;
+
+    int start = ThreadLocalRandom.current().nextInt(buckets);
+    for (int i = 0; i < buckets; i++) {
+      if (bucketRepo.tryReserve(productId, (start + i) % buckets, quantity) == 1) return true;
+    }
+
+    List<InventoryBucket> locked = bucketRepo.lockByProductId(productId);
+    if (locked.isEmpty()) return false;
+    int available = locked.stream().mapToInt(b -> Math.max(0, b.getAvailableStock())).sum();
+    if (available < quantity) {
+      throw new ConflictException("insufficient_stock", "Insufficient stock for product " + productId
+          + " (available=" + available + ", requested=" + quantity + ")");
+    }
+    int remaining = quantity;
+    for (InventoryBucket b : locked) {
+      int take = Math.min(remaining, Math.max(0, b.getAvailableStock()));
+      b.setReservedStock(b.getReservedStock() + take);
+      remaining -= take;
+    }
+    bucketRepo.saveAll(locked);
+    return true;
+  }
+
+  /**
+   * The products among {@code productIds} whose releases go to {@link #release}. Unlike a
+   * reservation, a release cannot trust a stale directory: the parent row of a striped product
+   * holds nothing to release, so units held in buckets would stay reserved. Products the directory
+   * does not list are therefore checked against the bucket rows, in one query.
+   */
+  public Set<String> stripedAmong(Collection<String> productIds) {
+    Set<String> striped = new HashSet<>();
+    List<String> unlisted = new ArrayList<>();
+    for (String productId : productIds) {
+      if (directory.bucketCount(productId) > 1) striped.add(productId);
+      else unlisted.add(productId);
+    }
+    if (!unlisted.isEmpty()) striped.addAll(bucketRepo.findStripedProductIdsIn(unlisted));
+    return striped;
+  }
+
+  /** @return false if the product has no buckets (any more) and the caller should use the inventory row */
+  public boolean release(OrderItem item) {
+    String productId = item.getProductId();
+    int quantity = item.getQuantity();
+    int buckets = directory.bucketCount(productId);
+    if (buckets > 1) {
+      int start = ThreadLocalRandom.current().nextInt(buckets);
+      for (int i = 0; i < buckets; i++) {
+        if (bucketRepo.tryRelease(productId, (start + i) % buckets, quantity) == 1) return true;
+      }
+    }
+
+    List<InventoryBucket> locked = bucketRepo.lockByProductId(productId);
+    if (locked.isEmpty()) return false;
+    int remaining = quantity;
+    for (InventoryBucket b : locked) {
+      int take = Math.min(remaining, b.getReservedStock());
+      b.setReservedStock(b.getReservedStock() - take);
+      remaining -= take;
+    }
+    bucketRepo.saveAll(locked);
+    if (remaining > 0) {
+      log.error("Released {} of {} units of {}: its buckets hold fewer reserved units than the order",
+          quantity - remaining, quantity, productId);
+    }
+    return true;
+  }
+}
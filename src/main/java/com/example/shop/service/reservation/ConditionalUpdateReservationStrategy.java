@@ -0,0 +1,42 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import org.springframework.stereotype.Component;
+
+/**
+ * One guarded UPDATE per line: the row lock is held only for the statement itself and no
+ * entity is loaded on the happy path. The extra read happens only when the update misses,
+ * to tell an unknown product apart from insufficient stock.
+ */
+@Component
+public class ConditionalUpdateReservationStrategy implements ReservationStrategy {
+  private final InventoryRepository inventoryRepo;
+
+  public ConditionalUpdateReservationStrategy(InventoryRepository inventoryRepo) {
+    this.inventoryRepo = inventoryRepo;
+  }
+
+  @Override
+  public ReservationMode mode() { return ReservationMode.CONDITIONAL_UPDATE; }
+
+  @Override
+  public void reserve(OrderItem item) {
+    if (inventoryRepo.tryReserve(item.getProductId(), item.getQuantity()) == 1) return;
+
+    Inventory inv = inventoryRepo.findByProductId(item.getProductId())
+        .orElseThrow(() -> new NotFoundException("product", "Inventory not found for product: " + item.getProductId()));
+    throw new ConflictException("insufficient_stock", "Insufficient stock for product " + item.getProductId()
+        + " (available=" + inv.getAvailableStock() + ", requested=" + item.getQuantity() + ")");
+  }
+
+  @Override
+  public void release(OrderItem item) {
+    if (inventoryRepo.release(item.getProductId(), item.getQuantity()) == 0) {
+      throw new NotFoundException("product", "Inventory not found for product: " + item.getProductId());
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import com.example.shop.web.error.ServiceUnavailableException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reserves against the {@link ReservationEngine} instead of locking inventory rows. The engine
+ * is not part of the database transaction, so a reservation is compensated if the surrounding
+ * transaction rolls back, and a release is only applied once the cancel has committed.
+ */
+@Component
+@ConditionalOnProperty(name = "app.inventory.reservation-mode", havingValue = "IN_MEMORY")
+public class InMemoryReservationStrategy implements ReservationStrategy {
+  private final ReservationEngine engine;
+  private final InventoryRepository inventoryRepo;
+
+  public InMemoryReservationStrategy(ReservationEngine engine, InventoryRepository inventoryRepo) {
+    this.engine = engine;
+    this.inventoryRepo = inventoryRepo;
+  }
+
+  @Override
+  public ReservationMode mode() { return ReservationMode.IN_MEMORY; }
+
+  @Override
+  public void reserve(OrderItem item) {
+    String productId = item.getProductId();
+    int quantity = item.getQuantity();
+    ensureTracked(productId);
+
+    CompletableFuture<ReservationShard.Outcome> pending = engine.reserve(productId, quantity);
+    ReservationShard.Outcome outcome;
+    try {
+      outcome = await(pending);
+    } catch (ServiceUnavailableException ex) {
+      // Caller gives up, but the command may still be applied later: undo it if so
+      pending.thenAccept(o -> { if (o.status() == ReservationShard.Status.RESERVED) engine.release(productId, quantity); });
+      throw ex;
+    }
+
+    switch (outcome.status()) {
+      case UNKNOWN -> throw new NotFoundException("product", "Inventory not found for product: " + productId);
+      case INSUFFICIENT -> throw new ConflictException("insufficient_stock", "Insufficient stock for product " + productId
+          + " (available=" + outcome.available() + ", requested=" + quantity + ")");
+      case RESERVED -> afterCompletion(() -> engine.release(productId, quantity));
+    }
+  }
+
+  @Override
+  public void release(OrderItem item) {
+    ensureTracked(item.getProductId());
+    afterCommit(() -> engine.release(item.getProductId(), item.getQuantity()));
+  }
+
+  /** Adopts products inserted after the engine started, reading the table only on a miss. */
+  private void ensureTracked(String productId) {
+    if (engine.isKnown(productId)) return;
+    Inventory inv = inventoryRepo.findByProductId(productId)
+        .orElseThrow(() -> new NotFoundException("product", "Inventory not found for product: " + productId));
+    await(engine.register(productId, inv.getTotalStock(), inv.getReservedStock()));
+  }
+
+  private <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get(engine.getCommandTimeoutMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("Interrupted waiting for reservation engine");
+    } catch (TimeoutException ex) {
+      throw new ServiceUnavailableException("Reservation engine did not respond within " + engine.getCommandTimeoutMs() + "ms");
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException re) throw re;
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  /** Runs {@code compensation} if the current transaction does not commit. */
+  private static void afterCompletion(Runnable compensation) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status != STATUS_COMMITTED) compensation.run();
+      }
+    });
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+}
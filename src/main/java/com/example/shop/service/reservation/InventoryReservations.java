@@ -0,0 +1,127 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.service.AvailabilityIndex;
+import com.example.shop.service.OrderMetrics;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Applies the configured {@link ReservationStrategy} to every line of an order, or the bucket
+ * path for striped products. Lines for the same product are merged and products are always
+ * visited in id order so concurrent orders lock rows in the same sequence.
+ */
+@Component
+public class InventoryReservations {
+  private final Map<ReservationMode, ReservationStrategy> strategies = new EnumMap<>(ReservationMode.class);
+  private final BucketReservations buckets;
+  private final InventoryRepository inventoryRepo;
+  private final ReservationMode mode;
+  private final OrderMetrics metrics;
+  private final AvailabilityIndex availability;
+
+  public InventoryReservations(List<ReservationStrategy> strategies,
+                               BucketReservations buckets,
+                               InventoryRepository inventoryRepo,
+                               @Value("${app.inventory.reservation-mode:PESSIMISTIC}") ReservationMode mode,
+                               OrderMetrics metrics,
+                               AvailabilityIndex availability) {
+    strategies.forEach(s -> this.strategies.put(s.mode(), s));
+    if (!this.strategies.containsKey(mode)) {
+      throw new IllegalStateException("No reservation strategy registered for mode " + mode);
+    }
+    this.buckets = buckets;
+    this.inventoryRepo = inventoryRepo;
+    this.mode = mode;
+    this.metrics = metrics;
+    this.availability = availability;
+  }
+
+  public ReservationMode getMode() { return mode; }
+
+  public void reserve(List<OrderItem> items) {
+    ReservationStrategy strategy = strategies.get(mode);
+    for (OrderItem line : merged(items)) {
+      try {
+        metrics.lockWait(line.getProductId()).record(() -> {
+          if (!buckets.reserve(line)) strategy.reserve(line);
+        });
+      } catch (ConflictException ex) {
+        insufficient(line, ex);
+        throw ex;
+      }
+    }
+  }
+
+  public void release(List<OrderItem> items) {
+    ReservationStrategy strategy = strategies.get(mode);
+    List<OrderItem> lines = merged(items);
+    Set<String> striped = buckets.stripedAmong(lines.stream().map(OrderItem::getProductId).toList());
+    for (OrderItem line : lines) {
+      if (!striped.contains(line.getProductId()) || !buckets.release(line)) strategy.release(line);
+    }
+  }
+
+  /**
+   * Reserves stock for several orders under a single set of row locks, taken once in product
+   * id order for the whole batch. Each order either reserves all its lines or none; a failed
+   * order is reported in the returned list (aligned with {@code orders}, null on success)
+   * instead of failing the others. Striped products are not handled here.
+   */
+  public List<RuntimeException> reserveEach(List<List<OrderItem>> orders) {
+    Set<String> productIds = new TreeSet<>();
+    orders.forEach(items -> items.forEach(i -> productIds.add(i.getProductId())));
+    Map<String, Inventory> rows = new HashMap<>();
+    inventoryRepo.lockAllByProductIdIn(productIds).forEach(inv -> rows.put(inv.getProductId(), inv));
+
+    List<RuntimeException> failures = new ArrayList<>(orders.size());
+    for (List<OrderItem> items : orders) {
+      List<OrderItem> lines = merged(items);
+      RuntimeException failure = null;
+      for (OrderItem line : lines) {
+        failure = check(rows.get(line.getProductId()), line);
+        if (failure instanceof ConflictException conflict) insufficient(line, conflict);
+        if (failure != null) break;
+      }
+      if (failure == null) {
+        for (OrderItem line : lines) {
+          Inventory inv = rows.get(line.getProductId());
+          inv.setReservedStock(inv.getReservedStock() + line.getQuantity());
+        }
+      }
+      failures.add(failure);
+    }
+    inventoryRepo.saveAll(rows.values());
+    return failures;
+  }
+
+  private void insufficient(OrderItem line, ConflictException ex) {
+    metrics.conflict(line.getProductId());
+    if ("insufficient_stock".equals(ex.getReason())) availability.insufficient(line.getProductId(), line.getQuantity());
+  }
+
+  private static RuntimeException check(Inventory inv, OrderItem line) {
+    if (inv == null) return new NotFoundException("product", "Inventory not found for product: " + line.getProductId());
+    int available = inv.getTotalStock() - inv.getReservedStock();
+    if (available < line.getQuantity()) {
+      return new ConflictException("insufficient_stock", "Insufficient stock for product " + line.getProductId()
+          + " (available=" + available + ", requested=" + line.getQuantity() + ")");
+    }
+    return null;
+  }
+
+  /** One line per product, in product id order. */
+  private static List<OrderItem> merged(List<OrderItem> items) {
+    Map<String, Integer> byProduct = new TreeMap<>();
+    items.forEach(i -> byProduct.merge(i.getProductId(), i.getQuantity(), Integer::sum));
+    List<OrderItem> lines = new ArrayList<>(byProduct.size());
+    byProduct.forEach((productId, quantity) -> lines.add(new OrderItem(productId, quantity)));
+    return lines;
+  }
+}
@@ -0,0 +1,106 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.InventoryVersion;
+import com.example.shop.service.OrderMetrics;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads stock and version without a lock, checks in Java, then writes with an UPDATE that only
+ * applies if the version is unchanged. A missed update re-reads and tries again after a jittered
+ * backoff, up to {@code max-attempts}; after that the line takes the row lock like
+ * {@link PessimisticReservationStrategy}, so an order never fails just for losing races.
+ * Products known to be contended ({@link ProductContention}) go straight to the row lock.
+ */
+@Component
+public class OptimisticReservationStrategy implements ReservationStrategy {
+  private static final Logger log = LoggerFactory.getLogger(OptimisticReservationStrategy.class);
+
+  private final InventoryRepository inventoryRepo;
+  private final PessimisticReservationStrategy pessimistic;
+  private final ProductContention contention;
+  private final OrderMetrics metrics;
+  private final int maxAttempts;
+  private final long backoffMicros;
+  private final long maxBackoffMicros;
+
+  public OptimisticReservationStrategy(InventoryRepository inventoryRepo, PessimisticReservationStrategy pessimistic,
+                                       ProductContention contention, OrderMetrics metrics,
+                                       @Value("${app.inventory.optimistic.max-attempts:4}") int maxAttempts,
+                                       @Value("${app.inventory.optimistic.backoff-micros:500}") long backoffMicros,
+                                       @Value("${app.inventory.optimistic.max-backoff-micros:20000}") long maxBackoffMicros) {
+    this.inventoryRepo = inventoryRepo;
+    this.pessimistic = pessimistic;
+    this.contention = contention;
+    this.metrics = metrics;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.backoffMicros = backoffMicros;
+    this.maxBackoffMicros = maxBackoffMicros;
+  }
+
+  @Override
+  public ReservationMode mode() { return ReservationMode.OPTIMISTIC; }
+
+  @Override
+  public void reserve(OrderItem item) {
+    String productId = item.getProductId();
+    if (contention.isPessimistic(productId)) {
+      pessimistic.reserve(item);
+      return;
+    }
+    for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+      InventoryVersion row = read(productId);
+      if (row.availableStock() < item.getQuantity()) {
+        throw new ConflictException("insufficient_stock", "Insufficient stock for product " + productId
+            + " (available=" + row.availableStock() + ", requested=" + item.getQuantity() + ")");
+      }
+      if (inventoryRepo.addReservedIfVersion(productId, item.getQuantity(), row.version()) == 1) return;
+      lost(productId, attempt);
+    }
+    metrics.optimisticFallback(productId);
+    pessimistic.reserve(item);
+  }
+
+  @Override
+  public void release(OrderItem item) {
+    String productId = item.getProductId();
+    if (contention.isPessimistic(productId)) {
+      pessimistic.release(item);
+      return;
+    }
+    for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+      InventoryVersion row = read(productId);
+      int delta = -Math.min(item.getQuantity(), row.reservedStock());
+      if (inventoryRepo.addReservedIfVersion(productId, delta, row.version()) == 1) return;
+      lost(productId, attempt);
+    }
+    metrics.optimisticFallback(productId);
+    pessimistic.release(item);
+  }
+
+  private InventoryVersion read(String productId) {
+    return inventoryRepo.findVersionByProductId(productId)
+        .orElseThrow(() -> new NotFoundException("product", "Inventory not found for product: " + productId));
+  }
+
+  /** Records a lost race and, unless it was the last attempt, waits a random slice of an exponential backoff. */
+  private void lost(String productId, int attempt) {
+    metrics.optimisticRetry(productId);
+    if (contention.conflict(productId)) {
+      log.info("Product {} is contended; reserving it with row locks for a while", productId);
+    }
+    if (attempt < maxAttempts) {
+      long cap = Math.min(maxBackoffMicros, backoffMicros << Math.min(attempt - 1, 20));
+      LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(cap + 1) * 1000);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PessimisticReservationStrategy implements ReservationStrategy {
+  private final InventoryRepository inventoryRepo;
+
+  public PessimisticReservationStrategy(InventoryRepository inventoryRepo) {
+    this.inventoryRepo = inventoryRepo;
+  }
+
+  @Override
+  public ReservationMode mode() { return ReservationMode.PESSIMISTIC; }
+
+  @Override
+  public void reserve(OrderItem item) {
+    Inventory inv = lock(item.getProductId());
+
+    int available = inv.getTotalStock() - inv.getReservedStock();
+    if (available < item.getQuantity()) {
+      throw new ConflictException("insufficient_stock", "Insufficient stock for product " + item.getProductId()
+          + " (available=" + available + ", requested=" + item.getQuantity() + ")");
+    }
+
+    inv.setReservedStock(inv.getReservedStock() + item.getQuantity());
+    inventoryRepo.save(inv);
+  }
+
+  @Override
+  public void release(OrderItem item) {
+    Inventory inv = lock(item.getProductId());
+
+    int newReserved = inv.getReservedStock() - item.getQuantity();
+    if (newReserved < 0) newReserved = 0;
+    inv.setReservedStock(newReserved);
+    inventoryRepo.save(inv);
+  }
+
+  private Inventory lock(String productId) {
+    return inventoryRepo.lockByProductId(productId)
+        .orElseThrow(() -> new NotFoundException("product", "Inventory not found for product: " + productId));
+  }
+}
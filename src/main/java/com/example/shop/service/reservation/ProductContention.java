@@ -0,0 +1,56 @@
+package com.example.shop.service.reservation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides per product whether {@link OptimisticReservationStrategy} should take a row lock
+ * instead. Products listed in {@code pessimistic-products} always do; any other product does
+ * for {@code cooldown-ms} once it has seen {@code threshold} version conflicts within
+ * {@code window-ms}. Counts are local to this instance.
+ */
+@Component
+public class ProductContention {
+  private final Set<String> pinned;
+  private final int threshold;
+  private final Cache<String, AtomicInteger> conflicts;
+  private final Cache<String, Boolean> contended;
+
+  public ProductContention(@Value("${app.inventory.optimistic.pessimistic-products:}") List<String> pinned,
+                           @Value("${app.inventory.optimistic.contention.threshold:5}") int threshold,
+                           @Value("${app.inventory.optimistic.contention.window-ms:10000}") long windowMs,
+                           @Value("${app.inventory.optimistic.contention.cooldown-ms:60000}") long cooldownMs,
+                           @Value("${app.inventory.optimistic.contention.max-products:10000}") long maxProducts,
+                           MeterRegistry registry) {
+    this.pinned = Set.copyOf(pinned.stream().map(String::trim).filter(s -> !s.isEmpty()).toList());
+    this.threshold = threshold;
+    this.conflicts = Caffeine.newBuilder().maximumSize(maxProducts)
+        .expireAfterWrite(Duration.ofMillis(windowMs)).build();
+    this.contended = Caffeine.newBuilder().maximumSize(maxProducts)
+        .expireAfterWrite(Duration.ofMillis(cooldownMs)).build();
+    Gauge.builder("shop.inventory.optimistic.contended", contended, c -> c.estimatedSize())
+        .description("Products temporarily reserved with row locks after repeated version conflicts")
+        .register(registry);
+  }
+
+  public boolean isPessimistic(String productId) {
+    return pinned.contains(productId) || contended.getIfPresent(productId) != null;
+  }
+
+  /** Counts a version conflict; returns true when this one moved the product to row locks. */
+  public boolean conflict(String productId) {
+    AtomicInteger count = conflicts.get(productId, id -> new AtomicInteger());
+    if (count.incrementAndGet() < threshold) return false;
+    conflicts.invalidate(productId);
+    return contended.asMap().putIfAbsent(productId, Boolean.TRUE) == null;
+  }
+}
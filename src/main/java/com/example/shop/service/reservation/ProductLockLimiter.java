@@ -0,0 +1,61 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.web.error.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caps how many transactions in this instance may hold or wait for one product's row lock. A
+ * slot is held until the surrounding transaction completes, since that is when the row lock is
+ * released; a request over the cap is turned away at once instead of taking a connection into
+ * the lock queue.
+ */
+@Component
+public class ProductLockLimiter {
+  private final ConcurrentMap<String, Integer> holders = new ConcurrentHashMap<>();
+  private final int maxPerProduct;
+  private final long retryAfterSeconds;
+
+  public ProductLockLimiter(@Value("${app.inventory.lock-budget.max-waiters-per-product:4}") int maxPerProduct,
+                            @Value("${app.inventory.lock-budget.retry-after-seconds:1}") long retryAfterSeconds) {
+    this.maxPerProduct = maxPerProduct;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Takes a slot for {@code productId} until the current transaction ends.
+   *
+   * @throws TooManyRequestsException if the product already has {@code max-waiters-per-product} holders
+   * @throws IllegalStateException if called outside a transaction
+   */
+  public void acquire(String productId) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      throw new IllegalStateException("Product lock slots must be taken inside a transaction");
+    }
+    boolean[] granted = new boolean[1];
+    holders.compute(productId, (id, n) -> {
+      int current = n == null ? 0 : n;
+      if (current >= maxPerProduct) return n;
+      granted[0] = true;
+      return current + 1;
+    });
+    if (!granted[0]) {
+      throw new TooManyRequestsException("Too many concurrent orders for product " + productId, retryAfterSeconds);
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        holders.computeIfPresent(productId, (id, n) -> n > 1 ? n - 1 : null);
+      }
+    });
+  }
+
+  int holders(String productId) {
+    return holders.getOrDefault(productId, 0);
+  }
+}
@@ -0,0 +1,212 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.service.InventoryImportedEvent;
+import com.example.shop.service.InventoryUpdatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps authoritative total/reserved counters in memory, partitioned by product id across
+ * single-writer shards. Every change is journaled locally before it is acknowledged and
+ * written back to the inventory table in batches by {@link #flush()}.
+ *
+ * <p>Only reserved_stock is owned here; total_stock is still written through
+ * {@link com.example.shop.service.InventoryService} and picked up after commit.
+ */
+@Component
+@ConditionalOnProperty(name = "app.inventory.reservation-mode", havingValue = "IN_MEMORY")
+public class ReservationEngine implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(ReservationEngine.class);
+
+  private final InventoryRepository inventoryRepo;
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final Path journalDir;
+  private final int journalSegmentBytes;
+  private final int queueCapacity;
+  private final long commandTimeoutMs;
+  private final ReservationShard[] shards;
+  private final MeterRegistry registry;
+  private final Set<String> known = ConcurrentHashMap.newKeySet();
+  private final Counter releaseFailures;
+  private volatile boolean running;
+
+  public ReservationEngine(InventoryRepository inventoryRepo,
+                           JdbcTemplate jdbc,
+                           PlatformTransactionManager txManager,
+                           @Value("${app.inventory.engine.shards:4}") int shardCount,
+                           @Value("${app.inventory.engine.queue-capacity:10000}") int queueCapacity,
+                           @Value("${app.inventory.engine.journal-dir:./data/reservation-journal}") Path journalDir,
+                           @Value("${app.inventory.engine.journal-segment-bytes:67108864}") int journalSegmentBytes,
+                           @Value("${app.inventory.engine.command-timeout-ms:1000}") long commandTimeoutMs,
+                           MeterRegistry registry) {
+    this.inventoryRepo = inventoryRepo;
+    this.jdbc = jdbc;
+    this.tx = new TransactionTemplate(txManager);
+    this.journalDir = journalDir;
+    this.journalSegmentBytes = journalSegmentBytes;
+    this.queueCapacity = queueCapacity;
+    this.commandTimeoutMs = commandTimeoutMs;
+    this.shards = new ReservationShard[shardCount];
+    this.registry = registry;
+    this.releaseFailures = Counter.builder("shop.inventory.engine.release.failures")
+        .description("Engine releases that could not be applied")
+        .register(registry);
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) return;
+    for (int i = 0; i < shards.length; i++) {
+      try {
+        shards[i] = new ReservationShard(i, queueCapacity,
+            new ReservationJournal(journalDir, "shard-" + i, journalSegmentBytes));
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Cannot open reservation journal in " + journalDir, ex);
+      }
+    }
+    // Rebuild: table first, then anything journaled but not yet flushed
+    for (Inventory inv : inventoryRepo.findAll()) {
+      shardFor(inv.getProductId()).load(inv.getProductId(), inv.getTotalStock(), inv.getReservedStock());
+      known.add(inv.getProductId());
+    }
+    for (int i = 0; i < shards.length; i++) {
+      ReservationShard shard = shards[i];
+      shard.recover();
+      shard.start();
+      // A restart creates new shards, so replace any gauge left from the previous start
+      Gauge gauge = registry.find("shop.inventory.shard.queue.size").tag("shard", String.valueOf(i)).gauge();
+      if (gauge != null) registry.remove(gauge);
+      Gauge.builder("shop.inventory.shard.queue.size", shard, ReservationShard::queueSize)
+          .description("Commands waiting for a reservation shard thread")
+          .tag("shard", String.valueOf(i))
+          .register(registry);
+    }
+    running = true;
+    log.info("Reservation engine started with {} shards and {} products", shards.length, known.size());
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) return;
+    flush();
+    running = false;
+    for (ReservationShard shard : shards) {
+      try {
+        shard.stop();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  /** Start before and stop after the web server so no request sees an unloaded engine. */
+  @Override
+  public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 2048; }
+
+  public boolean isKnown(String productId) { return known.contains(productId); }
+
+  CompletableFuture<ReservationShard.Outcome> reserve(String productId, int quantity) {
+    ReservationShard shard = shardFor(productId);
+    return shard.submit(() -> shard.reserve(productId, quantity));
+  }
+
+  /** Never rejected for a full queue; a release that still fails is logged and counted for reconciliation. */
+  CompletableFuture<Boolean> release(String productId, int quantity) {
+    ReservationShard shard = shardFor(productId);
+    return shard.submitAlways(() -> shard.release(productId, quantity)).whenComplete((released, ex) -> {
+      if (ex == null && released) return;
+      releaseFailures.increment();
+      log.error("Failed to release {} of {}; reserved stock must be reconciled", quantity, productId, ex);
+    });
+  }
+
+  /** Adopts a product found in the table after startup, e.g. inserted by another writer. */
+  CompletableFuture<Boolean> register(String productId, int total, int reserved) {
+    known.add(productId);
+    ReservationShard shard = shardFor(productId);
+    return shard.submit(() -> shard.register(productId, total, reserved));
+  }
+
+  /** Returns {total, reserved} or null if the product is not tracked. */
+  CompletableFuture<int[]> snapshot(String productId) {
+    ReservationShard shard = shardFor(productId);
+    return shard.submit(() -> shard.snapshot(productId));
+  }
+
+  long getCommandTimeoutMs() { return commandTimeoutMs; }
+
+  @TransactionalEventListener
+  public void onInventoryUpdated(InventoryUpdatedEvent event) {
+    known.add(event.productId());
+    ReservationShard shard = shardFor(event.productId());
+    shard.submitAlways(() -> shard.updateTotal(event.productId(), event.totalStock(), event.reservedStock()));
+  }
+
+  /** Imported totals only matter for tracked products; the rest are adopted from the table on first use. */
+  @TransactionalEventListener
+  public void onInventoryImported(InventoryImportedEvent event) {
+    event.totalStock().forEach((productId, total) -> {
+      if (!isKnown(productId)) return;
+      ReservationShard shard = shardFor(productId);
+      shard.submitAlways(() -> shard.updateTotal(productId, total, 0));
+    });
+  }
+
+  /** Writes changed reserved counters back to the inventory table, one batch per shard. */
+  @Scheduled(fixedDelayString = "${app.inventory.engine.flush-interval-ms:200}")
+  public void flush() {
+    if (!running) return;
+    for (ReservationShard shard : shards) {
+      Map<String, Integer> batch;
+      try {
+        batch = shard.submit(shard::drain).get(commandTimeoutMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException | TimeoutException ex) {
+        log.warn("Reservation shard did not drain in time; retrying next cycle", ex);
+        continue;
+      }
+      try {
+        if (!batch.isEmpty()) {
+          List<Object[]> args = new ArrayList<>(batch.size());
+          batch.forEach((productId, reserved) -> args.add(new Object[] { reserved, productId }));
+          tx.executeWithoutResult(s ->
+              jdbc.batchUpdate("UPDATE inventory SET reserved_stock = ?, version = version + 1 WHERE product_id = ?", args));
+        }
+        shard.submitAlways(shard::checkpoint);
+      } catch (RuntimeException ex) {
+        log.warn("Failed to flush {} reservation counters; will retry", batch.size(), ex);
+        shard.submitAlways(() -> shard.redirty(batch.keySet()));
+      }
+    }
+  }
+
+  private ReservationShard shardFor(String productId) {
+    return shards[Math.floorMod(productId.hashCode(), shards.length)];
+  }
+}
@@ -0,0 +1,142 @@
+package com.example.shop.service.reservation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Append-only, memory-mapped journal of reserved-stock values for one shard. Each record holds
+ * the absolute reserved count of a product after a change, so replay is "last record wins".
+ *
+ * <p>The journal alternates between two segments. {@link #compact} rewrites the still-unflushed
+ * state into the standby segment and only then bumps its epoch header, so a crash at any point
+ * leaves exactly one complete segment with the highest epoch.
+ *
+ * <p>Appends only reach the page cache; {@link #force} makes them durable. The shard forces once
+ * per group of commands, before acknowledging any of them, so an acknowledged change survives a
+ * crash of the host as well as of the process.
+ *
+ * <p>Not thread-safe: owned by the shard's writer thread.
+ */
+final class ReservationJournal implements Closeable {
+  private static final int HEADER_BYTES = Long.BYTES;
+
+  private final Segment[] segments = new Segment[2];
+  private Segment active;
+
+  ReservationJournal(Path dir, String name, int segmentBytes) throws IOException {
+    Files.createDirectories(dir);
+    segments[0] = new Segment(dir.resolve(name + ".0"), segmentBytes);
+    segments[1] = new Segment(dir.resolve(name + ".1"), segmentBytes);
+    active = segments[0].epoch() >= segments[1].epoch() ? segments[0] : segments[1];
+  }
+
+  void replay(ObjIntConsumer<String> sink) {
+    active.scan(sink);
+  }
+
+  /** @return false if the active segment is full; {@link #compact} it and append again */
+  boolean append(String productId, int reserved) {
+    return active.append(productId.getBytes(StandardCharsets.UTF_8), reserved);
+  }
+
+  /** Writes the records appended since the last call through to the file. */
+  void force() {
+    active.force();
+  }
+
+  boolean isEmpty() {
+    return active.end == HEADER_BYTES;
+  }
+
+  /** Replaces the journal content with {@code live}, the state not yet flushed to the table. */
+  void compact(Map<String, Integer> live) {
+    Segment standby = active == segments[0] ? segments[1] : segments[0];
+    standby.rewrite(live, active.epoch() + 1);
+    active = standby;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Segment s : segments) s.close();
+  }
+
+  private static final class Segment implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private int end;
+    private int forced;
+
+    Segment(Path file, int size) throws IOException {
+      this.file = file;
+      this.channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      this.end = scan(null);
+      this.forced = end;
+    }
+
+    long epoch() { return buf.getLong(0); }
+
+    /** Walks the records, returning the offset just past the last complete one. */
+    int scan(ObjIntConsumer<String> sink) {
+      int pos = HEADER_BYTES;
+      while (pos + Short.BYTES <= buf.capacity()) {
+        short len = buf.getShort(pos);
+        if (len <= 0 || pos + Short.BYTES + len + Integer.BYTES > buf.capacity()) break;
+        if (sink != null) {
+          byte[] id = new byte[len];
+          buf.get(pos + Short.BYTES, id);
+          sink.accept(new String(id, StandardCharsets.UTF_8), buf.getInt(pos + Short.BYTES + len));
+        }
+        pos += Short.BYTES + len + Integer.BYTES;
+      }
+      return pos;
+    }
+
+    boolean append(byte[] id, int reserved) {
+      int next = end + Short.BYTES + id.length + Integer.BYTES;
+      if (next + Short.BYTES > buf.capacity()) return false;
+      buf.put(end + Short.BYTES, id);
+      buf.putInt(end + Short.BYTES + id.length, reserved);
+      // Length goes in last so a torn write reads back as end-of-journal
+      buf.putShort(end, (short) id.length);
+      end = next;
+      return true;
+    }
+
+    void force() {
+      if (end == forced) return;
+      buf.force(forced, end - forced);
+      forced = end;
+    }
+
+    void rewrite(Map<String, Integer> live, long epoch) {
+      int previousEnd = end;
+      end = HEADER_BYTES;
+      live.forEach((productId, reserved) -> {
+        if (!append(productId.getBytes(StandardCharsets.UTF_8), reserved)) {
+          throw new IllegalStateException("Reservation journal segment cannot hold " + live.size() + " counters: " + file);
+        }
+      });
+      for (int i = end; i < previousEnd; i++) buf.put(i, (byte) 0);
+      buf.force();
+      buf.putLong(0, epoch);
+      buf.force();
+      forced = end;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.example.shop.service.reservation;
+
+/** How order lines reserve and release stock against the inventory table. */
+public enum ReservationMode {
+  /** SELECT ... FOR UPDATE, check in Java, then save. */
+  PESSIMISTIC,
+  /** As PESSIMISTIC, but the row lock wait is capped and few requests may queue per product. */
+  BOUNDED_WAIT,
+  /** One guarded UPDATE per line; the affected-row count decides the outcome. */
+  CONDITIONAL_UPDATE,
+  /**
+   * Unlocked read, then an UPDATE guarded by the row version, retried with backoff; contended
+   * products fall back to PESSIMISTIC.
+   */
+  OPTIMISTIC,
+  /** Sharded in-memory counters with a local journal and write-behind to the table. */
+  IN_MEMORY
+}
@@ -0,0 +1,222 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.web.error.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A partition of the in-memory stock counters owned by a single writer thread. All state is
+ * touched only from that thread; other threads interact through {@link #submit} and
+ * {@link #submitAlways}. Commands run in groups of up to {@link #MAX_GROUP}; their results are
+ * handed back only after the group's journal records have been forced to disk.
+ */
+final class ReservationShard implements Runnable {
+  private static final Logger log = LoggerFactory.getLogger(ReservationShard.class);
+  private static final int MAX_GROUP = 256;
+
+  enum Status { RESERVED, INSUFFICIENT, UNKNOWN }
+
+  record Outcome(Status status, int available) { }
+
+  private static final class StockLevel {
+    int total;
+    int reserved;
+    StockLevel(int total, int reserved) { this.total = total; this.reserved = reserved; }
+  }
+
+  private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+  private final int queueCapacity;
+  private final ReservationJournal journal;
+  private final Map<String, StockLevel> levels = new HashMap<>();
+  private final Set<String> dirty = new HashSet<>();
+  /** Drained but not yet committed; still needed in the journal if it is compacted meanwhile. */
+  private final Set<String> flushing = new HashSet<>();
+  private final List<Consumer<RuntimeException>> acks = new ArrayList<>();
+  private final Thread thread;
+  private volatile boolean running;
+
+  ReservationShard(int index, int queueCapacity, ReservationJournal journal) {
+    this.queueCapacity = queueCapacity;
+    this.journal = journal;
+    this.thread = new Thread(this, "reservation-shard-" + index);
+    this.thread.setDaemon(true);
+  }
+
+  /** Seeds a counter from the inventory table; only valid before {@link #start}. */
+  void load(String productId, int total, int reserved) {
+    levels.put(productId, new StockLevel(total, reserved));
+  }
+
+  /** Applies journaled values on top of the table state; only valid before {@link #start}. */
+  void recover() {
+    journal.replay((productId, reserved) -> {
+      StockLevel level = levels.get(productId);
+      if (level != null) {
+        level.reserved = reserved;
+        dirty.add(productId);
+      }
+    });
+  }
+
+  void start() {
+    running = true;
+    thread.start();
+  }
+
+  void stop() throws InterruptedException {
+    running = false;
+    thread.join();
+  }
+
+  int queueSize() { return queue.size(); }
+
+  /** Queues a new command, or fails it at once when {@code queueCapacity} commands are waiting. */
+  <T> CompletableFuture<T> submit(Supplier<T> op) {
+    if (queue.size() >= queueCapacity) {
+      return CompletableFuture.failedFuture(new ServiceUnavailableException("Reservation shard queue is full"));
+    }
+    return submitAlways(op);
+  }
+
+  /**
+   * Queues a command regardless of the capacity. For commands that settle state the caller
+   * already depends on (releases, new totals, flush bookkeeping): dropping one would leave stock
+   * held or counters unwritten for good, so they may take the queue past its capacity.
+   */
+  <T> CompletableFuture<T> submitAlways(Supplier<T> op) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    queue.add(() -> {
+      T value;
+      try {
+        value = op.get();
+      } catch (RuntimeException ex) {
+        result.completeExceptionally(ex);
+        return;
+      }
+      acks.add(failure -> {
+        if (failure == null) result.complete(value);
+        else result.completeExceptionally(failure);
+      });
+    });
+    return result;
+  }
+
+  @Override
+  public void run() {
+    while (running || !queue.isEmpty()) {
+      try {
+        Runnable op = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (op == null) continue;
+        op.run();
+        for (int i = 1; i < MAX_GROUP && (op = queue.poll()) != null; i++) op.run();
+        acknowledge();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    try {
+      journal.close();
+    } catch (IOException ex) {
+      log.warn("Failed to close reservation journal", ex);
+    }
+  }
+
+  private void acknowledge() {
+    RuntimeException failure = null;
+    try {
+      journal.force();
+    } catch (RuntimeException ex) {
+      log.error("Failed to force reservation journal; failing {} commands", acks.size(), ex);
+      failure = ex;
+    }
+    for (Consumer<RuntimeException> ack : acks) ack.accept(failure);
+    acks.clear();
+  }
+
+  // ---- operations below run on the writer thread only ----
+
+  Outcome reserve(String productId, int quantity) {
+    StockLevel level = levels.get(productId);
+    if (level == null) return new Outcome(Status.UNKNOWN, 0);
+    int available = level.total - level.reserved;
+    if (available < quantity) return new Outcome(Status.INSUFFICIENT, available);
+    record(productId, level, level.reserved + quantity);
+    return new Outcome(Status.RESERVED, available - quantity);
+  }
+
+  boolean release(String productId, int quantity) {
+    StockLevel level = levels.get(productId);
+    if (level == null) return false;
+    record(productId, level, Math.max(0, level.reserved - quantity));
+    return true;
+  }
+
+  /** Registers a product if absent; returns whether it was added. */
+  boolean register(String productId, int total, int reserved) {
+    return levels.putIfAbsent(productId, new StockLevel(total, reserved)) == null;
+  }
+
+  /** Adopts a new total from the table and re-flushes our reserved count over whatever was written. */
+  Void updateTotal(String productId, int total, int reserved) {
+    StockLevel level = levels.computeIfAbsent(productId, id -> new StockLevel(total, reserved));
+    level.total = total;
+    dirty.add(productId);
+    return null;
+  }
+
+  int[] snapshot(String productId) {
+    StockLevel level = levels.get(productId);
+    return level == null ? null : new int[] { level.total, level.reserved };
+  }
+
+  /**
+   * Hands the changed counters to the flusher, together with any earlier batch that was neither
+   * checkpointed nor redirtied, e.g. because the flusher gave up waiting for it.
+   */
+  Map<String, Integer> drain() {
+    flushing.addAll(dirty);
+    dirty.clear();
+    Map<String, Integer> batch = new HashMap<>();
+    for (String productId : flushing) batch.put(productId, levels.get(productId).reserved);
+    return batch;
+  }
+
+  /** Called after a drained batch is committed: the journal only needs what changed since. */
+  Void checkpoint() {
+    flushing.clear();
+    if (journal.isEmpty() && dirty.isEmpty()) return null;
+    Map<String, Integer> live = new HashMap<>();
+    for (String productId : dirty) live.put(productId, levels.get(productId).reserved);
+    journal.compact(live);
+    return null;
+  }
+
+  /** Called when a drained batch failed to commit. */
+  Void redirty(Collection<String> productIds) {
+    dirty.addAll(productIds);
+    flushing.removeAll(productIds);
+    return null;
+  }
+
+  private void record(String productId, StockLevel level, int reserved) {
+    if (!journal.append(productId, reserved)) {
+      // Full segment: keep only the counters the table does not have yet, then retry
+      Map<String, Integer> live = new HashMap<>();
+      for (String id : dirty) live.put(id, levels.get(id).reserved);
+      for (String id : flushing) live.put(id, levels.get(id).reserved);
+      journal.compact(live);
+      if (!journal.append(productId, reserved)) {
+        throw new IllegalStateException("Reservation journal is too small for the unflushed counters");
+      }
+    }
+    level.reserved = reserved;
+    dirty.add(productId);
+  }
+}
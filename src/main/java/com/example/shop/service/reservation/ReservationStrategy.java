@@ -0,0 +1,18 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.OrderItem;
+
+/**
+ * Reserves or releases stock for a single order line. Callers are responsible for the
+ * surrounding transaction and for visiting lines in product id order.
+ */
+public interface ReservationStrategy {
+  ReservationMode mode();
+
+  /** @throws com.example.shop.web.error.NotFoundException  if the product has no inventory row
+   *  @throws com.example.shop.web.error.ConflictException  if available stock is insufficient */
+  void reserve(OrderItem item);
+
+  /** @throws com.example.shop.web.error.NotFoundException  if the product has no inventory row */
+  void release(OrderItem item);
+}
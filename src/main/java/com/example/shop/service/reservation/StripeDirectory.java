@@ -0,0 +1,76 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.repository.InventoryBucketRepository;
+import com.example.shop.service.InventoryStripedEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process view of which products are striped and into how many buckets. It is loaded in an
+ * early lifecycle phase, before the web server starts; local changes are applied after commit and
+ * the periodic refresh picks up changes made by other instances. A stale entry is safe for
+ * reservations: the parent row of a striped product holds no stock, so the unstriped path can only
+ * report a conflict, and the bucket path falls back when it finds no buckets. Releases do not rely
+ * on it; see {@link BucketReservations#stripedAmong}.
+ */
+@Component
+public class StripeDirectory implements SmartLifecycle {
+  private final InventoryBucketRepository bucketRepo;
+  private volatile Map<String, Integer> bucketCounts = Map.of();
+  private volatile boolean running;
+
+  public StripeDirectory(InventoryBucketRepository bucketRepo) {
+    this.bucketRepo = bucketRepo;
+  }
+
+  @Override
+  public void start() {
+    refresh();
+    running = true;
+  }
+
+  @Override
+  public void stop() { running = false; }
+
+  @Override
+  public boolean isRunning() { return running; }
+
+  @Override
+  public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+
+  /** Number of buckets for the product, or 1 when it is not striped. */
+  public int bucketCount(String productId) {
+    return bucketCounts.getOrDefault(productId, 1);
+  }
+
+  public boolean isStriped(String productId) {
+    return bucketCount(productId) > 1;
+  }
+
+  public Iterable<String> stripedProducts() {
+    return bucketCounts.keySet();
+  }
+
+  @Scheduled(fixedDelayString = "${app.inventory.buckets.directory-refresh-ms:30000}")
+  public void refresh() {
+    Map<String, Integer> counts = new ConcurrentHashMap<>();
+    for (Object[] row : bucketRepo.countBucketsByProduct()) {
+      int count = ((Number) row[1]).intValue();
+      if (count > 1) counts.put((String) row[0], count);
+    }
+    bucketCounts = counts;
+  }
+
+  @TransactionalEventListener
+  public void onStriped(InventoryStripedEvent event) {
+    Map<String, Integer> counts = new ConcurrentHashMap<>(bucketCounts);
+    if (event.bucketCount() > 1) counts.put(event.productId(), event.bucketCount());
+    else counts.remove(event.productId());
+    bucketCounts = counts;
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.shop.web.dto;
+
+import java.util.List;
+
+/** Validated by the service, so an empty or oversized list gets a 400 with the reason. */
+public class BulkOrderRequest {
+  private List<Long> orderIds;
+
+  public List<Long> getOrderIds() { return orderIds; }
+  public void setOrderIds(List<Long> orderIds) { this.orderIds = orderIds; }
+}
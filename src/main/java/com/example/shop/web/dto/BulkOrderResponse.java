@@ -0,0 +1,18 @@
+package com.example.shop.web.dto;
+
+import com.example.shop.domain.OrderStatus;
+import java.util.List;
+
+public class BulkOrderResponse {
+  public int applied;
+  public List<Result> results;
+
+  public static class Result {
+    public Long id;
+    /** APPLIED, NOT_FOUND or INVALID_STATE */
+    public String outcome;
+    public OrderStatus status;
+    public Result() {}
+    public Result(Long id, String outcome, OrderStatus status) { this.id = id; this.outcome = outcome; this.status = status; }
+  }
+}
@@ -0,0 +1,18 @@
+package com.example.shop.web.dto;
+
+import java.util.List;
+
+public class InventoryImportResponse {
+  public long rowsRead;
+  public long rowsUpserted;
+  public long rowsFailed;
+  public long elapsedMs;
+  public List<RowError> errors;
+
+  public static class RowError {
+    public long line;
+    public String message;
+    public RowError() {}
+    public RowError(long l, String m) { line = l; message = m; }
+  }
+}
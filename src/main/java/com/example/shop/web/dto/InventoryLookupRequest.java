@@ -0,0 +1,14 @@
+package com.example.shop.web.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+public class InventoryLookupRequest {
+  @NotNull
+  @Size(min = 1)
+  private List<String> productIds;
+
+  public List<String> getProductIds() { return productIds; }
+  public void setProductIds(List<String> productIds) { this.productIds = productIds; }
+}
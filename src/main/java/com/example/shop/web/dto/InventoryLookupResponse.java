@@ -0,0 +1,17 @@
+package com.example.shop.web.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class InventoryLookupResponse {
+  public Map<String, Stock> items;
+  public List<String> unknown;
+
+  public static class Stock {
+    public int totalStock;
+    public int reservedStock;
+    public int availableStock;
+    public Stock() {}
+    public Stock(int total, int reserved) { totalStock = total; reservedStock = reserved; availableStock = total - reserved; }
+  }
+}
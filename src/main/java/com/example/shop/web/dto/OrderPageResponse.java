@@ -0,0 +1,17 @@
+package com.example.shop.web.dto;
+
+import com.example.shop.domain.OrderStatus;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class OrderPageResponse {
+  public List<Summary> items;
+  public String nextCursor;
+
+  public static class Summary {
+    public Long id;
+    public OrderStatus status;
+    public OffsetDateTime createdAt;
+    public OffsetDateTime updatedAt;
+  }
+}
@@ -1,6 +1,15 @@
-
 package com.example.shop.web.error;
 
 public class ConflictException extends RuntimeException {
-  public ConflictException(String msg) { super(msg); }
+  /** Why the request conflicted (insufficient_stock, order_state, ...); used as a metric tag. */
+  private final String reason;
+
+  public ConflictException(String msg) { this("other", msg); }
+
+  public ConflictException(String reason, String msg) {
+    super(msg);
+    this.reason = reason;
+  }
+
+  public String getReason() { return reason; }
 }
@@ -0,0 +1,5 @@
+package com.example.shop.web.error;
+
+public class ForbiddenException extends RuntimeException {
+  public ForbiddenException(String msg) { super(msg); }
+}
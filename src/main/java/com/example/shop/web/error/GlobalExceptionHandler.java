@@ -1,20 +1,30 @@
 
 package com.example.shop.web.error;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
+  private final ObjectProvider<MeterRegistry> registry;
+
+  public GlobalExceptionHandler(ObjectProvider<MeterRegistry> registry) {
+    this.registry = registry;
+  }
 
   @ExceptionHandler(NotFoundException.class)
   public ResponseEntity<ApiError> handleNotFound(NotFoundException ex, HttpServletRequest req) {
+    count(ex, ex.getReason());
     return build(404, "Not Found", ex.getMessage(), req.getRequestURI());
   }
 
   @ExceptionHandler(ConflictException.class)
   public ResponseEntity<ApiError> handleConflict(ConflictException ex, HttpServletRequest req) {
+    count(ex, ex.getReason());
     return build(409, "Conflict", ex.getMessage(), req.getRequestURI());
   }
 
@@ -23,11 +33,37 @@ public class GlobalExceptionHandler {
     return build(400, "Bad Request", ex.getMessage(), req.getRequestURI());
   }
 
+  @ExceptionHandler(ForbiddenException.class)
+  public ResponseEntity<ApiError> handleForbidden(ForbiddenException ex, HttpServletRequest req) {
+    return build(403, "Forbidden", ex.getMessage(), req.getRequestURI());
+  }
+
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<ApiError> handleTooManyRequests(TooManyRequestsException ex, HttpServletRequest req) {
+    return retryable(build(429, "Too Many Requests", ex.getMessage(), req.getRequestURI()), ex.getRetryAfterSeconds());
+  }
+
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity<ApiError> handleUnavailable(ServiceUnavailableException ex, HttpServletRequest req) {
+    return retryable(build(503, "Service Unavailable", ex.getMessage(), req.getRequestURI()), ex.getRetryAfterSeconds());
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<ApiError> handleGeneric(Exception ex, HttpServletRequest req) {
     return build(500, "Internal Server Error", ex.getMessage(), req.getRequestURI());
   }
 
+  private void count(RuntimeException ex, String reason) {
+    registry.ifAvailable(r -> r.counter("shop.errors", "exception", ex.getClass().getSimpleName(), "reason", reason)
+        .increment());
+  }
+
+  private ResponseEntity<ApiError> retryable(ResponseEntity<ApiError> res, long retryAfterSeconds) {
+    return ResponseEntity.status(res.getStatusCode())
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+        .body(res.getBody());
+  }
+
   private ResponseEntity<ApiError> build(int status, String error, String msg, String path) {
     ApiError a = new ApiError();
     a.status = status; a.error = error; a.message = msg; a.path = path;
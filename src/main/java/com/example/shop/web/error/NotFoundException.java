@@ -1,6 +1,15 @@
-
 package com.example.shop.web.error;
 
 public class NotFoundException extends RuntimeException {
-  public NotFoundException(String msg) { super(msg); }
+  /** Kind of resource that was missing (user, order, product); used as a metric tag. */
+  private final String reason;
+
+  public NotFoundException(String msg) { this("other", msg); }
+
+  public NotFoundException(String reason, String msg) {
+    super(msg);
+    this.reason = reason;
+  }
+
+  public String getReason() { return reason; }
 }
@@ -0,0 +1,13 @@
+package com.example.shop.web.error;
+
+public class ServiceUnavailableException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public ServiceUnavailableException(String msg) { this(msg, 1); }
+  public ServiceUnavailableException(String msg, long retryAfterSeconds) {
+    super(msg);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
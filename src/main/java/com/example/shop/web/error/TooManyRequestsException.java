@@ -0,0 +1,12 @@
+package com.example.shop.web.error;
+
+public class TooManyRequestsException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String msg, long retryAfterSeconds) {
+    super(msg);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,102 @@
+-- Schema as of the switch from Hibernate ddl-auto to versioned migrations.
+--
+-- Every statement is guarded, so this also applies on top of a database that Hibernate
+-- created: Flyway baselines such a database at version 0 and then runs this file, which only
+-- adds what is missing (for example inventory.version on databases older than that column).
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS orders_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS inventory_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS inventory_buckets_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    display_name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(255) NOT NULL CHECK (status IN ('PENDING', 'CONFIRMED', 'CANCELLED')),
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    order_id BIGINT NOT NULL,
+    product_id VARCHAR(255) NOT NULL,
+    quantity INTEGER NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS inventory (
+    id BIGINT NOT NULL,
+    product_id VARCHAR(255) NOT NULL,
+    total_stock INTEGER NOT NULL CHECK (total_stock >= 0),
+    reserved_stock INTEGER NOT NULL CHECK (reserved_stock >= 0),
+    version BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_inventory_product UNIQUE (product_id)
+);
+ALTER TABLE inventory ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE IF NOT EXISTS inventory_buckets (
+    id BIGINT NOT NULL,
+    product_id VARCHAR(255) NOT NULL,
+    bucket_no INTEGER NOT NULL CHECK (bucket_no >= 0),
+    total_stock INTEGER NOT NULL CHECK (total_stock >= 0),
+    reserved_stock INTEGER NOT NULL CHECK (reserved_stock >= 0),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_inventory_bucket UNIQUE (product_id, bucket_no)
+);
+
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    order_id BIGINT,
+    error_status INTEGER,
+    error_message VARCHAR(1000),
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_orders_user_created ON orders (user_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_orders_user_status_created ON orders (user_id, status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys (created_at);
+
+-- Hibernate-created databases already have these under generated names
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'orders'::regclass AND contype = 'f') THEN
+        ALTER TABLE orders ADD CONSTRAINT fk_orders_user FOREIGN KEY (user_id) REFERENCES users;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'order_items'::regclass AND contype = 'f') THEN
+        ALTER TABLE order_items ADD CONSTRAINT fk_order_items_order FOREIGN KEY (order_id) REFERENCES orders;
+    END IF;
+END $$;
+
+-- Cold storage for terminal orders, partitioned by created_at month (see OrderArchive)
+CREATE TABLE IF NOT EXISTS orders_archive (
+    id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL,
+    archived_at TIMESTAMPTZ NOT NULL,
+    product_ids VARCHAR(255)[] NOT NULL,
+    quantities INTEGER[] NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+CREATE INDEX IF NOT EXISTS idx_orders_archive_user_created ON orders_archive (user_id, created_at, id);
@@ -0,0 +1,5 @@
+-- Outbox ids are now taken one at a time, so an order's later events always get higher ids.
+-- outbox_event_seq replaces outbox_seq, which handed each instance blocks of 50.
+CREATE SEQUENCE IF NOT EXISTS outbox_event_seq START WITH 1 INCREMENT BY 1;
+SELECT setval('outbox_event_seq', max_id) FROM (SELECT MAX(id) AS max_id FROM outbox) m WHERE max_id IS NOT NULL;
+DROP SEQUENCE IF EXISTS outbox_seq;
@@ -0,0 +1,4 @@
+-- Lets the archiver find candidates without scanning the hot table (see OrderArchive).
+-- Built concurrently so a baselined database with a large orders table keeps taking writes;
+-- Flyway runs a CONCURRENTLY statement outside a transaction.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_terminal_updated ON orders (updated_at) WHERE status IN ('CONFIRMED', 'CANCELLED');
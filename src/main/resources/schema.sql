@@ -1,2 +1 @@
-
--- Optional: left intentionally minimal. Hibernate auto-creates tables.
+-- Not used: the schema comes from Hibernate (default profile) or from db/migration (fast-start profile).
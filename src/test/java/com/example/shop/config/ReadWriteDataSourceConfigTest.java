@@ -0,0 +1,49 @@
+package com.example.shop.config;
+
+import com.example.shop.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A second database on the embedded server stands in for the replica. */
+@SpringBootTest
+class ReadWriteDataSourceConfigTest extends PostgresIntegrationTest {
+
+  @DynamicPropertySource
+  static void replicaProperties(DynamicPropertyRegistry registry) {
+    registry.add("app.datasource.read.url", () -> databaseUrl("replica"));
+  }
+
+  @Autowired private JdbcTemplate jdbc;
+  @Autowired private PlatformTransactionManager txManager;
+  @Autowired private ReplicaDataSource replica;
+
+  @Test
+  void read_only_transactions_use_the_read_pool() {
+    TransactionTemplate readOnly = new TransactionTemplate(txManager);
+    readOnly.setReadOnly(true);
+
+    assertEquals("replica", readOnly.execute(s -> currentDatabase()));
+    assertEquals("postgres", new TransactionTemplate(txManager).execute(s -> currentDatabase()));
+    assertEquals("postgres", currentDatabase());
+  }
+
+  @Test
+  void probe_reports_a_primary_as_fully_caught_up() {
+    replica.probe();
+
+    assertTrue(replica.isUsable());
+    assertEquals(0, replica.getLagMs());
+  }
+
+  private String currentDatabase() {
+    return jdbc.queryForObject("SELECT current_database()", String.class);
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.shop.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaDataSourceTest {
+
+  @Mock private DataSource replicaPool;
+  @Mock private DataSource primaryPool;
+  @Mock private Connection replicaConnection;
+  @Mock private Connection primaryConnection;
+
+  @Test
+  void unreachable_replica_falls_back_to_the_primary_until_a_probe_succeeds() throws SQLException {
+    ReplicaDataSource ds = new ReplicaDataSource(replicaPool, primaryPool, 1000);
+    when(replicaPool.getConnection()).thenThrow(new SQLException("connection refused"));
+    when(primaryPool.getConnection()).thenReturn(primaryConnection);
+
+    assertSame(primaryConnection, ds.getConnection());
+    assertFalse(ds.isUsable());
+    assertSame(primaryConnection, ds.getConnection());
+    verify(replicaPool, times(1)).getConnection();
+
+    reset(replicaPool);
+    stubLag(0);
+    ds.probe();
+    assertTrue(ds.isUsable());
+  }
+
+  @Test
+  void replica_lagging_past_the_tolerance_is_skipped() throws SQLException {
+    ReplicaDataSource ds = new ReplicaDataSource(replicaPool, primaryPool, 1000);
+    when(primaryPool.getConnection()).thenReturn(primaryConnection);
+    stubLag(2500);
+
+    ds.probe();
+
+    assertEquals(2500, ds.getLagMs());
+    assertFalse(ds.isUsable());
+    assertSame(primaryConnection, ds.getConnection());
+  }
+
+  @Test
+  void connections_with_credentials_follow_the_same_routing() throws SQLException {
+    ReplicaDataSource ds = new ReplicaDataSource(replicaPool, primaryPool, 1000);
+    when(replicaPool.getConnection("reader", "secret")).thenReturn(replicaConnection)
+        .thenThrow(new SQLException("connection refused"));
+    when(primaryPool.getConnection("reader", "secret")).thenReturn(primaryConnection);
+
+    assertSame(replicaConnection, ds.getConnection("reader", "secret"));
+    assertSame(primaryConnection, ds.getConnection("reader", "secret"));
+    assertFalse(ds.isUsable());
+  }
+
+  private void stubLag(long lagMs) throws SQLException {
+    Statement st = mock(Statement.class);
+    ResultSet rs = mock(ResultSet.class);
+    when(replicaPool.getConnection()).thenReturn(replicaConnection);
+    when(replicaConnection.createStatement()).thenReturn(st);
+    when(st.executeQuery(ReplicaDataSource.LAG_SQL)).thenReturn(rs);
+    when(rs.next()).thenReturn(true);
+    when(rs.getLong(1)).thenReturn(lagMs);
+  }
+}
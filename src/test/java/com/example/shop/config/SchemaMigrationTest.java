@@ -0,0 +1,65 @@
+package com.example.shop.config;
+
+import com.example.shop.support.PostgresIntegrationTest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The fast-start profile on an empty database: the schema comes only from the migrations, and
+ * Hibernate validates the entities against it.
+ */
+@SpringBootTest
+@ActiveProfiles("fast-start")
+class SchemaMigrationTest extends PostgresIntegrationTest {
+
+  @DynamicPropertySource
+  static void migratedDatabase(DynamicPropertyRegistry registry) {
+    // Bound onto the pool after spring.datasource.url, which the base class registers last
+    registry.add("spring.datasource.hikari.jdbc-url", () -> databaseUrl("migrated"));
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    registry.add("spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access", () -> "true");
+  }
+
+  @Autowired private JdbcTemplate jdbc;
+
+  @Test
+  void migrations_create_the_schema_the_entities_expect() {
+    assertEquals("migrated", jdbc.queryForObject("SELECT current_database()", String.class));
+    assertEquals(List.of("1", "2", "3"), jdbc.queryForList(
+        "SELECT version FROM flyway_schema_history WHERE success ORDER BY installed_rank", String.class));
+    assertNotNull(jdbc.queryForObject("SELECT to_regclass('idx_orders_terminal_updated')", String.class));
+    assertNotNull(jdbc.queryForObject("SELECT to_regclass('orders_archive')", String.class));
+  }
+
+  @Test
+  void a_database_created_by_hibernate_is_baselined_and_completed() {
+    DriverManagerDataSource legacy = new DriverManagerDataSource(databaseUrl("hibernate_created"), "postgres", "");
+    JdbcTemplate legacyJdbc = new JdbcTemplate(legacy);
+    // inventory as Hibernate created it before the version column existed
+    legacyJdbc.execute("CREATE TABLE inventory (reserved_stock integer not null, total_stock integer not null,"
+        + " id bigint not null primary key, product_id varchar(255) not null constraint uk_inventory_product unique)");
+    legacyJdbc.update("INSERT INTO inventory VALUES (1, 5, 1, 'SKU-LEGACY')");
+
+    Flyway.configure().dataSource(legacy).baselineOnMigrate(true).baselineVersion("0")
+        .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+
+    assertEquals(0L, legacyJdbc.queryForObject(
+        "SELECT version FROM inventory WHERE product_id = 'SKU-LEGACY'", Long.class));
+    assertEquals(List.of("0", "1", "2", "3"), legacyJdbc.queryForList(
+        "SELECT version FROM flyway_schema_history ORDER BY installed_rank", String.class));
+    assertNotNull(legacyJdbc.queryForObject("SELECT to_regclass('orders_archive')", String.class));
+    assertNotNull(legacyJdbc.queryForObject("SELECT to_regclass('idx_orders_terminal_updated')", String.class));
+  }
+}
@@ -2,28 +2,40 @@
 package com.example.shop.controller;
 
 import com.example.shop.domain.Inventory;
+import com.example.shop.security.JwtService;
+import com.example.shop.service.DatabaseBulkhead;
+import com.example.shop.service.ImportFormat;
+import com.example.shop.service.InventoryImportService;
 import com.example.shop.service.InventoryService;
 import com.example.shop.web.error.GlobalExceptionHandler;
 import com.example.shop.web.error.NotFoundException;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = InventoryController.class)
-@Import(GlobalExceptionHandler.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import({GlobalExceptionHandler.class, DatabaseBulkhead.class})
 class InventoryControllerTest {
 
   @Autowired private MockMvc mvc;
+  @MockBean private JwtService jwtService;
   @MockBean private InventoryService inventoryService;
+  @MockBean private InventoryImportService importService;
 
   @Test
   void get_inventory_returns_200() throws Exception {
@@ -57,4 +69,40 @@ class InventoryControllerTest {
         .andExpect(jsonPath("$.reservedStock", is(0)))
         .andExpect(jsonPath("$.availableStock", is(20)));
   }
+
+  @Test
+  void stripe_inventory_returns_summed_view() throws Exception {
+    Inventory inv = new Inventory(); inv.setProductId("SKU-HOT"); inv.setTotalStock(100); inv.setReservedStock(10);
+    Mockito.when(inventoryService.stripeInventory("SKU-HOT", 8)).thenReturn(inv);
+    mvc.perform(post("/inventory/SKU-HOT/buckets").param("count", "8"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.totalStock", is(100)))
+        .andExpect(jsonPath("$.availableStock", is(90)));
+  }
+
+  @Test
+  void lookup_returns_map_and_unknown_ids() throws Exception {
+    Inventory a = new Inventory(); a.setProductId("SKU-A"); a.setTotalStock(10); a.setReservedStock(4);
+    Map<String, Inventory> found = new LinkedHashMap<>(); found.put("SKU-A", a);
+    Mockito.when(inventoryService.getInventoryByProductIds(List.of("SKU-A", "SKU-X"))).thenReturn(found);
+    mvc.perform(get("/inventory").param("productIds", "SKU-A,SKU-X"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.SKU-A.availableStock", is(6)))
+        .andExpect(jsonPath("$.unknown", contains("SKU-X")));
+    mvc.perform(post("/inventory").contentType(MediaType.APPLICATION_JSON).content("{\"productIds\":[\"SKU-A\",\"SKU-X\"]}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.SKU-A.totalStock", is(10)))
+        .andExpect(jsonPath("$.unknown", contains("SKU-X")));
+  }
+
+  @Test
+  void import_csv_streams_body_and_reports_row_errors() throws Exception {
+    Mockito.when(importService.importStock(Mockito.any(), Mockito.eq(ImportFormat.CSV)))
+        .thenReturn(new InventoryImportService.Result(3, 2, 1, List.of(new InventoryImportService.RowError(3, "Invalid totalStock")), 5));
+    mvc.perform(post("/inventory/import").contentType("text/csv").content("productId,totalStock\nSKU-A,5\nSKU-B,7\nSKU-C,x\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.rowsUpserted", is(2)))
+        .andExpect(jsonPath("$.rowsFailed", is(1)))
+        .andExpect(jsonPath("$.errors[0].line", is(3)));
+  }
 }
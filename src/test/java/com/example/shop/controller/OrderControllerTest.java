@@ -2,15 +2,24 @@
 package com.example.shop.controller;
 
 import com.example.shop.domain.*;
+import com.example.shop.security.JwtService;
+import com.example.shop.service.AvailabilityIndex;
+import com.example.shop.service.DatabaseBulkhead;
+import com.example.shop.service.OrderIdempotency;
 import com.example.shop.service.OrderService;
+import com.example.shop.service.OrderTransition;
+import com.example.shop.service.OrderView;
 import com.example.shop.web.dto.CreateOrderRequest;
+import com.example.shop.web.error.BadRequestException;
 import com.example.shop.web.error.GlobalExceptionHandler;
 import com.example.shop.web.error.NotFoundException;
+import com.example.shop.web.error.TooManyRequestsException;
 import com.example.shop.web.error.ConflictException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -24,13 +33,17 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = OrderController.class)
-@Import(GlobalExceptionHandler.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import({GlobalExceptionHandler.class, DatabaseBulkhead.class})
 class OrderControllerTest {
 
   @Autowired private MockMvc mvc;
   @Autowired private ObjectMapper mapper;
 
+  @MockBean private JwtService jwtService;
   @MockBean private OrderService orderService;
+  @MockBean private OrderIdempotency idempotency;
+  @MockBean private AvailabilityIndex availability;
 
   private Order sampleOrder(Long id, OrderStatus status) {
     User u = new User();
@@ -61,6 +74,38 @@ class OrderControllerTest {
         .andExpect(jsonPath("$.items", hasSize(2)));
   }
 
+  @Test
+  void post_orders_with_seen_idempotency_key_replays_the_stored_order() throws Exception {
+    CreateOrderRequest req = new CreateOrderRequest(); req.setUserId(1L);
+    CreateOrderRequest.Item i1 = new CreateOrderRequest.Item(); i1.setProductId("SKU-BOOK-123"); i1.setQuantity(2);
+    req.setItems(List.of(i1));
+    var now = java.time.OffsetDateTime.now();
+    Mockito.when(idempotency.createOrder(Mockito.eq("abc-1"), Mockito.eq(1L), Mockito.anyList(), Mockito.any()))
+        .thenReturn(new OrderIdempotency.Result(101L, null));
+    Mockito.when(orderService.getOrderViewFromPrimary(101L)).thenReturn(new OrderView(101L, 1L, OrderStatus.PENDING,
+        List.of(new OrderItem("SKU-BOOK-123", 2)), now, now));
+    mvc.perform(post("/orders").header("Idempotency-Key", "abc-1")
+            .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsBytes(req)))
+        .andExpect(status().isCreated())
+        .andExpect(header().string("Location", "/orders/101"))
+        .andExpect(header().string("Idempotent-Replayed", "true"))
+        .andExpect(jsonPath("$.id", is(101)));
+    Mockito.verify(orderService, Mockito.never()).createOrder(Mockito.any(), Mockito.anyList());
+  }
+
+  @Test
+  void post_orders_over_the_per_product_limit_is_429_with_retry_after() throws Exception {
+    CreateOrderRequest req = new CreateOrderRequest(); req.setUserId(1L);
+    CreateOrderRequest.Item i1 = new CreateOrderRequest.Item(); i1.setProductId("SKU-BOOK-123"); i1.setQuantity(1);
+    req.setItems(List.of(i1));
+    Mockito.when(orderService.createOrder(Mockito.eq(1L), Mockito.anyList()))
+        .thenThrow(new TooManyRequestsException("Too many concurrent orders for product SKU-BOOK-123", 2));
+    mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsBytes(req)))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().string("Retry-After", "2"))
+        .andExpect(jsonPath("$.error", is("Too Many Requests")));
+  }
+
   @Test
   void post_orders_conflict_on_insufficient_stock() throws Exception {
     CreateOrderRequest req = new CreateOrderRequest(); req.setUserId(1L);
@@ -73,10 +118,23 @@ class OrderControllerTest {
         .andExpect(jsonPath("$.message", containsString("Insufficient stock")));
   }
 
+  @Test
+  void post_orders_known_to_be_short_is_rejected_before_the_service() throws Exception {
+    CreateOrderRequest req = new CreateOrderRequest(); req.setUserId(1L);
+    CreateOrderRequest.Item i1 = new CreateOrderRequest.Item(); i1.setProductId("SKU-BOOK-123"); i1.setQuantity(1);
+    req.setItems(List.of(i1));
+    Mockito.doThrow(new ConflictException("insufficient_stock", "Insufficient stock for product SKU-BOOK-123"))
+        .when(availability).check(Mockito.anyList());
+    mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsBytes(req)))
+        .andExpect(status().isConflict());
+    Mockito.verifyNoInteractions(orderService);
+  }
+
   @Test
   void get_order_returns_200() throws Exception {
-    Order o = sampleOrder(123L, OrderStatus.PENDING);
-    Mockito.when(orderService.getOrderById(123L)).thenReturn(o);
+    OrderView o = new OrderView(123L, 1L, OrderStatus.PENDING,
+        List.of(new OrderItem("SKU-BOOK-123", 2), new OrderItem("SKU-MUG-456", 1)), null, null);
+    Mockito.when(orderService.getOrderView(123L)).thenReturn(o);
     mvc.perform(get("/orders/123"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id", is(123)))
@@ -85,10 +143,28 @@ class OrderControllerTest {
 
   @Test
   void get_order_not_found_returns_404() throws Exception {
-    Mockito.when(orderService.getOrderById(999L)).thenThrow(new NotFoundException("Order not found"));
+    Mockito.when(orderService.getOrderView(999L)).thenThrow(new NotFoundException("Order not found"));
     mvc.perform(get("/orders/999"))
         .andExpect(status().isNotFound())
         .andExpect(jsonPath("$.error", is("Not Found")))
         .andExpect(jsonPath("$.message", containsString("Order not found")));
   }
+
+  @Test
+  void post_orders_confirm_reports_an_outcome_per_id() throws Exception {
+    Mockito.when(orderService.confirmOrders(List.of(1L, 2L, 3L))).thenReturn(List.of(
+        new OrderTransition(1L, OrderTransition.Outcome.APPLIED, OrderStatus.CONFIRMED),
+        new OrderTransition(2L, OrderTransition.Outcome.INVALID_STATE, OrderStatus.CANCELLED),
+        new OrderTransition(3L, OrderTransition.Outcome.NOT_FOUND, null)));
+    mvc.perform(post("/orders/confirm").contentType(MediaType.APPLICATION_JSON).content("{\"orderIds\":[1,2,3]}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.applied", is(1)))
+        .andExpect(jsonPath("$.results[0].outcome", is("APPLIED")))
+        .andExpect(jsonPath("$.results[1].status", is("CANCELLED")))
+        .andExpect(jsonPath("$.results[2].outcome", is("NOT_FOUND")));
+
+    Mockito.when(orderService.cancelOrders(List.of())).thenThrow(new BadRequestException("At least one order id is required"));
+    mvc.perform(post("/orders/cancel").contentType(MediaType.APPLICATION_JSON).content("{\"orderIds\":[]}"))
+        .andExpect(status().isBadRequest());
+  }
 }
@@ -0,0 +1,81 @@
+package com.example.shop.controller;
+
+import com.example.shop.domain.OrderStatus;
+import com.example.shop.repository.OrderSummary;
+import com.example.shop.security.JwtService;
+import com.example.shop.service.OrderPage;
+import com.example.shop.service.OrderService;
+import com.example.shop.web.error.BadRequestException;
+import com.example.shop.web.error.GlobalExceptionHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = UserController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(GlobalExceptionHandler.class)
+class UserControllerTest {
+
+  @Autowired private MockMvc mvc;
+
+  @MockBean private JwtService jwtService;
+  @MockBean private OrderService orderService;
+
+  @Test
+  void get_user_orders_returns_summaries_and_cursor() throws Exception {
+    OffsetDateTime now = OffsetDateTime.now();
+    Mockito.when(orderService.isUser(1L, "demo@example.com")).thenReturn(true);
+    Mockito.when(orderService.listUserOrders(1L, "PENDING", "abc", 2)).thenReturn(new OrderPage(
+        List.of(new OrderSummary(7L, OrderStatus.PENDING, now, now), new OrderSummary(5L, OrderStatus.PENDING, now, now)),
+        "next"));
+    mvc.perform(get("/users/1/orders").param("status", "PENDING").param("after", "abc").param("limit", "2")
+            .principal(signedIn("demo@example.com", "ROLE_USER")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items", hasSize(2)))
+        .andExpect(jsonPath("$.items[0].id", is(7)))
+        .andExpect(jsonPath("$.items[0].items").doesNotExist())
+        .andExpect(jsonPath("$.nextCursor", is("next")));
+  }
+
+  @Test
+  void get_user_orders_maps_bad_cursor_to_400() throws Exception {
+    Mockito.when(orderService.isUser(1L, "demo@example.com")).thenReturn(true);
+    Mockito.when(orderService.listUserOrders(1L, null, "junk", 20)).thenThrow(new BadRequestException("Invalid cursor: junk"));
+    mvc.perform(get("/users/1/orders").param("after", "junk").principal(signedIn("demo@example.com", "ROLE_USER")))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", containsString("Invalid cursor")));
+  }
+
+  @Test
+  void get_user_orders_of_another_user_is_forbidden() throws Exception {
+    mvc.perform(get("/users/2/orders").principal(signedIn("demo@example.com", "ROLE_USER")))
+        .andExpect(status().isForbidden());
+    Mockito.verify(orderService, Mockito.never()).listUserOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt());
+  }
+
+  @Test
+  void admins_may_list_any_users_orders() throws Exception {
+    Mockito.when(orderService.listUserOrders(2L, null, null, 20)).thenReturn(new OrderPage(List.of(), null));
+    mvc.perform(get("/users/2/orders").principal(signedIn("admin@example.com", "ROLE_ADMIN")))
+        .andExpect(status().isOk());
+    Mockito.verify(orderService, Mockito.never()).isUser(Mockito.any(), Mockito.any());
+  }
+
+  private static UsernamePasswordAuthenticationToken signedIn(String email, String role) {
+    return new UsernamePasswordAuthenticationToken(email, null, List.of(new SimpleGrantedAuthority(role)));
+  }
+}
@@ -0,0 +1,64 @@
+package com.example.shop.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+  private static final String SECRET = "test-secret-test-secret-test-secret-42";
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final JwtService jwt = new JwtService(SECRET, "shop", 60, 100, registry);
+
+  @Test
+  void authenticate_verifies_once_and_hands_out_a_fresh_authentication() {
+    String token = jwt.generateToken("demo@example.com", List.of("USER", "ROLE_ADMIN"));
+    Authentication first = jwt.authenticate(token);
+    assertEquals("demo@example.com", first.getName());
+    assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"),
+        first.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    ((UsernamePasswordAuthenticationToken) first).setDetails("request-1");
+
+    Authentication second = jwt.authenticate(token);
+    assertNotSame(first, second);
+    assertNull(second.getDetails());
+    assertEquals(first.getAuthorities(), second.getAuthorities());
+    assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "miss")
+        .functionCounter().count());
+  }
+
+  @Test
+  void authenticate_rejects_tampered_tokens_every_time() {
+    String token = jwt.generateToken("demo@example.com", List.of("USER"));
+    String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+    assertThrows(JwtException.class, () -> jwt.authenticate(tampered));
+    assertThrows(JwtException.class, () -> jwt.authenticate(tampered));
+  }
+
+  @Test
+  void cached_token_stops_authenticating_at_its_exp() throws Exception {
+    long exp = (System.currentTimeMillis() / 1000 + 2) * 1000;
+    String token = Jwts.builder()
+        .setSubject("demo@example.com")
+        .setIssuer("shop")
+        .setExpiration(new Date(exp))
+        .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+        .compact();
+    assertNotNull(jwt.authenticate(token));
+    Thread.sleep(exp - System.currentTimeMillis() + 50);
+    assertThrows(ExpiredJwtException.class, () -> jwt.authenticate(token));
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.shop.service;
+
+import com.example.shop.web.error.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseBulkheadTest {
+
+  @Test
+  void call_returns_result_and_frees_permit() {
+    DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 50);
+    assertEquals("a", bulkhead.call(() -> "a"));
+    assertEquals("b", bulkhead.call(() -> "b"));
+  }
+
+  @Test
+  void call_fails_fast_when_saturated() throws Exception {
+    DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 50);
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = Thread.ofVirtual().start(() -> bulkhead.call(() -> {
+      entered.countDown();
+      try { release.await(); } catch (InterruptedException ignored) { }
+      return null;
+    }));
+    entered.await();
+
+    assertThrows(ServiceUnavailableException.class, () -> bulkhead.call(() -> "late"));
+
+    release.countDown();
+    holder.join();
+    assertEquals("ok", bulkhead.call(() -> "ok"));
+  }
+}
@@ -0,0 +1,67 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.web.error.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryCacheTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final InventoryCache cache = new InventoryCache(100, 60_000, registry);
+
+  @Test
+  void get_loads_once_until_invalidated_after_write() {
+    AtomicInteger loads = new AtomicInteger();
+    cache.get("SKU-1", id -> inv(id, 10, loads.incrementAndGet()));
+    Inventory hit = cache.get("SKU-1", id -> inv(id, 10, loads.incrementAndGet()));
+    assertEquals(1, loads.get());
+    assertEquals(1, hit.getReservedStock());
+
+    cache.onReservationsChanged(new ReservationsChangedEvent(Set.of("SKU-1", "SKU-2")));
+    assertEquals(2, cache.get("SKU-1", id -> inv(id, 10, loads.incrementAndGet())).getReservedStock());
+
+    cache.onInventoryUpdated(new InventoryUpdatedEvent("SKU-1", 20, 2));
+    cache.get("SKU-1", id -> inv(id, 20, loads.incrementAndGet()));
+    assertEquals(3, loads.get());
+    assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+  }
+
+  @Test
+  void concurrent_misses_share_one_load() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      threads.add(Thread.ofVirtual().start(() -> {
+        try { start.await(); } catch (InterruptedException ignored) { }
+        cache.get("SKU-HOT", id -> {
+          loads.incrementAndGet();
+          try { Thread.sleep(50); } catch (InterruptedException ignored) { }
+          return inv(id, 5, 0);
+        });
+      }));
+    }
+    start.countDown();
+    for (Thread t : threads) t.join();
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void failed_load_is_not_cached() {
+    assertThrows(NotFoundException.class, () -> cache.get("SKU-X", id -> { throw new NotFoundException("Product not found: " + id); }));
+    assertEquals(3, cache.get("SKU-X", id -> inv(id, 3, 0)).getTotalStock());
+  }
+
+  private Inventory inv(String productId, int total, int reserved) {
+    Inventory i = new Inventory(); i.setProductId(productId); i.setTotalStock(total); i.setReservedStock(reserved); return i;
+  }
+}
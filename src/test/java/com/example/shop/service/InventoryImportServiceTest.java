@@ -0,0 +1,71 @@
+package com.example.shop.service;
+
+import com.example.shop.service.reservation.StripeDirectory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryImportServiceTest {
+
+  @Mock private JdbcTemplate jdbc;
+  @Mock private PlatformTransactionManager txManager;
+  @Mock private InventoryService inventoryService;
+  @Mock private StripeDirectory stripes;
+  @Mock private ApplicationEventPublisher events;
+  @Captor private ArgumentCaptor<List<Object[]>> batchArgs;
+
+  private InventoryImportService importService;
+
+  @BeforeEach
+  void setup() {
+    importService = new InventoryImportService(jdbc, txManager, inventoryService, stripes, events,
+        new ObjectMapper(), 2, 10, 1000);
+  }
+
+  @Test
+  void csv_is_upserted_in_batches_and_bad_rows_are_reported() {
+    String csv = "productId,totalStock\nSKU-A,5\nSKU-B,x\nSKU-C,7\n\nSKU-D,-1\nSKU-E,9\n";
+    InventoryImportService.Result res = importService.importStock(stream(csv), ImportFormat.CSV);
+
+    assertEquals(5, res.rowsRead());
+    assertEquals(3, res.rowsUpserted());
+    assertEquals(2, res.rowsFailed());
+    assertEquals(List.of(3L, 6L), res.errors().stream().map(InventoryImportService.RowError::line).toList());
+    verify(jdbc, times(2)).batchUpdate(anyString(), batchArgs.capture());
+    assertEquals(2, batchArgs.getAllValues().get(0).size());
+    assertArrayEquals(new Object[] { "SKU-E", 9 }, batchArgs.getAllValues().get(1).get(0));
+    verify(events).publishEvent(new InventoryImportedEvent(Map.of("SKU-A", 5, "SKU-C", 7)));
+  }
+
+  @Test
+  void ndjson_routes_striped_products_through_the_bucket_aware_upsert() {
+    when(stripes.isStriped(anyString())).thenAnswer(a -> "SKU-HOT".equals(a.getArgument(0)));
+    String ndjson = "{\"productId\":\"SKU-HOT\",\"totalStock\":100}\n{\"productId\":\"SKU-A\",\"totalStock\":3}\n{oops\n";
+    InventoryImportService.Result res = importService.importStock(stream(ndjson), ImportFormat.NDJSON);
+
+    assertEquals(2, res.rowsUpserted());
+    assertEquals(1, res.rowsFailed());
+    verify(inventoryService).upsertInventory("SKU-HOT", 100);
+    verify(jdbc).batchUpdate(anyString(), batchArgs.capture());
+    assertEquals(1, batchArgs.getValue().size());
+  }
+
+  private static ByteArrayInputStream stream(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+}
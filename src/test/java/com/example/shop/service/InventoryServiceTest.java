@@ -2,13 +2,22 @@
 package com.example.shop.service;
 
 import com.example.shop.domain.Inventory;
+import com.example.shop.domain.InventoryBucket;
+import com.example.shop.repository.InventoryBucketRepository;
 import com.example.shop.repository.InventoryRepository;
+import com.example.shop.service.reservation.StripeDirectory;
 import com.example.shop.web.error.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,7 +27,17 @@ import static org.mockito.Mockito.*;
 class InventoryServiceTest {
 
   @Mock private InventoryRepository inventoryRepo;
-  @InjectMocks private InventoryService inventoryService;
+  @Mock private InventoryBucketRepository bucketRepo;
+  @Mock private StripeDirectory stripes;
+  @Mock private ApplicationEventPublisher events;
+  @Mock private PlatformTransactionManager txManager;
+  private InventoryService inventoryService;
+
+  @BeforeEach
+  void setup() {
+    InventoryCache cache = new InventoryCache(100, 60_000, new SimpleMeterRegistry());
+    inventoryService = new InventoryService(inventoryRepo, bucketRepo, stripes, cache, events, txManager, 1000, 2);
+  }
 
   @Test
   void getInventoryByProductId_returns_inventory() {
@@ -29,6 +48,8 @@ class InventoryServiceTest {
     assertEquals(10, res.getTotalStock());
     assertEquals(4, res.getReservedStock());
     assertEquals(6, res.getAvailableStock());
+    // Loaded on the primary: a read-only transaction would go to the replica
+    verify(txManager).getTransaction(argThat(def -> !def.isReadOnly()));
   }
 
   @Test
@@ -39,14 +60,77 @@ class InventoryServiceTest {
 
   @Test
   void upsertInventory_creates_new_or_updates_existing() {
-    when(inventoryRepo.findByProductId("SKU-NEW")).thenReturn(Optional.empty());
+    when(inventoryRepo.lockByProductId("SKU-NEW")).thenReturn(Optional.empty());
     when(inventoryRepo.save(any())).thenAnswer(a -> a.getArgument(0));
     Inventory created = inventoryService.upsertInventory("SKU-NEW", 20);
     assertEquals("SKU-NEW", created.getProductId()); assertEquals(20, created.getTotalStock()); assertEquals(0, created.getReservedStock());
 
     Inventory existing = new Inventory(); existing.setProductId("SKU-EXIST"); existing.setTotalStock(5); existing.setReservedStock(2);
-    when(inventoryRepo.findByProductId("SKU-EXIST")).thenReturn(Optional.of(existing));
+    when(inventoryRepo.lockByProductId("SKU-EXIST")).thenReturn(Optional.of(existing));
     Inventory updated = inventoryService.upsertInventory("SKU-EXIST", 15);
     assertEquals("SKU-EXIST", updated.getProductId()); assertEquals(15, updated.getTotalStock()); assertEquals(2, updated.getReservedStock());
+    verify(events).publishEvent(new InventoryUpdatedEvent("SKU-EXIST", 15, 2));
+  }
+
+  @Test
+  void getInventoryByProductId_sums_buckets_of_striped_product() {
+    Inventory parent = new Inventory(); parent.setProductId("SKU-HOT");
+    when(inventoryRepo.findByProductId("SKU-HOT")).thenReturn(Optional.of(parent));
+    when(stripes.isStriped("SKU-HOT")).thenReturn(true);
+    when(bucketRepo.findByProductIdOrderByBucketNo("SKU-HOT")).thenReturn(List.of(bucket(0, 6, 2), bucket(1, 4, 1)));
+    Inventory res = inventoryService.getInventoryByProductId("SKU-HOT");
+    assertEquals(10, res.getTotalStock());
+    assertEquals(3, res.getReservedStock());
+    assertEquals(7, res.getAvailableStock());
+  }
+
+  @Test
+  void getInventoryByProductIds_loads_misses_in_chunks_and_skips_unknown() {
+    when(inventoryRepo.findByProductIdIn(List.of("SKU-A", "SKU-B"))).thenReturn(List.of(inv("SKU-A", 5, 1), inv("SKU-B", 0, 0)));
+    when(inventoryRepo.findByProductIdIn(List.of("SKU-X"))).thenReturn(List.of());
+    when(stripes.isStriped(anyString())).thenAnswer(a -> "SKU-B".equals(a.getArgument(0)));
+    when(bucketRepo.sumByProductIdIn(List.of("SKU-B"))).thenReturn(List.<Object[]>of(new Object[] { "SKU-B", 8L, 3L }));
+
+    Map<String, Inventory> res = inventoryService.getInventoryByProductIds(List.of("SKU-A", "SKU-B", "SKU-X", "SKU-A"));
+    assertEquals(List.of("SKU-A", "SKU-B"), List.copyOf(res.keySet()));
+    assertEquals(4, res.get("SKU-A").getAvailableStock());
+    assertEquals(8, res.get("SKU-B").getTotalStock());
+    assertEquals(3, res.get("SKU-B").getReservedStock());
+
+    inventoryService.getInventoryByProductIds(List.of("SKU-A", "SKU-B"));
+    verify(inventoryRepo, times(2)).findByProductIdIn(anyCollection());
+  }
+
+  @Test
+  void stripeInventory_moves_stock_and_reservations_into_buckets() {
+    Inventory parent = new Inventory(); parent.setProductId("SKU-HOT"); parent.setTotalStock(10); parent.setReservedStock(3);
+    when(inventoryRepo.lockByProductId("SKU-HOT")).thenReturn(Optional.of(parent));
+    when(bucketRepo.lockByProductId("SKU-HOT")).thenReturn(List.of());
+    Inventory res = inventoryService.stripeInventory("SKU-HOT", 3);
+    assertEquals(10, res.getTotalStock());
+    assertEquals(3, res.getReservedStock());
+    assertEquals(0, parent.getTotalStock());
+    assertEquals(0, parent.getReservedStock());
+    verify(bucketRepo).saveAll(argThat((List<InventoryBucket> buckets) -> buckets.size() == 3
+        && buckets.stream().allMatch(b -> b.getReservedStock() == 1)
+        && buckets.stream().mapToInt(InventoryBucket::getAvailableStock).max().getAsInt()
+          - buckets.stream().mapToInt(InventoryBucket::getAvailableStock).min().getAsInt() <= 1));
+    verify(events).publishEvent(new InventoryStripedEvent("SKU-HOT", 3));
+  }
+
+  @Test
+  void distribute_never_drives_a_bucket_negative_when_total_drops_below_reserved() {
+    List<InventoryBucket> buckets = List.of(bucket(0, 5, 4), bucket(1, 5, 2));
+    InventoryService.distribute(buckets, 3);
+    assertEquals(3, buckets.stream().mapToInt(InventoryBucket::getTotalStock).sum());
+    assertTrue(buckets.stream().allMatch(b -> b.getTotalStock() >= 0));
+  }
+
+  private InventoryBucket bucket(int no, int total, int reserved) {
+    InventoryBucket b = new InventoryBucket("SKU-HOT", no); b.setTotalStock(total); b.setReservedStock(reserved); return b;
+  }
+
+  private Inventory inv(String productId, int total, int reserved) {
+    Inventory i = new Inventory(); i.setProductId(productId); i.setTotalStock(total); i.setReservedStock(reserved); return i;
   }
 }
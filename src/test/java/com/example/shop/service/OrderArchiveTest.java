@@ -0,0 +1,128 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.OrderStatus;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.OrderSummary;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.web.error.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = { "app.orders.archive.enabled=true", "app.orders.archive.min-age-ms=86400000" })
+class OrderArchiveTest extends PostgresIntegrationTest {
+
+  @Autowired private OrderService orderService;
+  @Autowired private OrderArchiver archiver;
+  @Autowired private UserRepository userRepo;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private JdbcTemplate jdbc;
+
+  private Long userId;
+  private String productId;
+
+  @BeforeEach
+  void setup() {
+    User user = new User();
+    user.setEmail("archive-" + System.nanoTime() + "@example.com");
+    user.setDisplayName("Archive");
+    userId = userRepo.save(user).getId();
+    productId = "SKU-ARCHIVE-" + System.nanoTime();
+    Inventory inv = new Inventory();
+    inv.setProductId(productId);
+    inv.setTotalStock(100);
+    inventoryRepo.save(inv);
+  }
+
+  @Test
+  void old_terminal_orders_move_to_a_month_partition_and_stay_readable() {
+    Long confirmed = orderService.confirmOrder(place(2).getId()).getId();
+    Long cancelled = orderService.cancelOrder(place(1).getId()).getId();
+    Long pending = place(3).getId();
+    Long recent = orderService.confirmOrder(place(1).getId()).getId();
+    age(confirmed, "2025-01-10");
+    age(cancelled, "2025-02-20");
+    age(pending, "2025-02-21");
+
+    archiver.run();
+
+    assertEquals(List.of(pending, recent), jdbc.queryForList(
+        "SELECT id FROM orders WHERE user_id = ? ORDER BY id", Long.class, userId));
+    assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM order_items WHERE order_id IN (?, ?)",
+        Integer.class, confirmed, cancelled));
+    assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM orders_archive_2025_01 WHERE id = ?",
+        Integer.class, confirmed));
+    assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM orders_archive_2025_02 WHERE id = ?",
+        Integer.class, cancelled));
+
+    OrderView view = orderService.getOrderView(confirmed);
+    assertEquals(OrderStatus.CONFIRMED, view.status());
+    assertEquals(userId, view.userId());
+    assertEquals(List.of(new OrderItem(productId, 2)), view.items());
+    assertThrows(NotFoundException.class, () -> orderService.confirmOrder(confirmed));
+
+    OrderPage first = orderService.listUserOrders(userId, null, null, 2);
+    OrderPage second = orderService.listUserOrders(userId, null, first.nextCursor(), 2);
+    assertEquals(List.of(recent, pending), first.items().stream().map(OrderSummary::id).toList());
+    assertEquals(List.of(cancelled, confirmed), second.items().stream().map(OrderSummary::id).toList());
+    assertNull(second.nextCursor());
+    assertEquals(List.of(cancelled), orderService.listUserOrders(userId, "cancelled", null, 10).items().stream()
+        .map(OrderSummary::id).toList());
+  }
+
+  @Test
+  void a_partition_another_instance_created_is_used_as_is() {
+    jdbc.execute("CREATE TABLE IF NOT EXISTS orders_archive_2024_12 PARTITION OF orders_archive"
+        + " FOR VALUES FROM ('2024-12-01 00:00:00+00') TO ('2025-01-01 00:00:00+00')");
+    Long confirmed = orderService.confirmOrder(place(1).getId()).getId();
+    age(confirmed, "2024-12-24");
+
+    archiver.run();
+
+    assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM orders_archive_2024_12 WHERE id = ?",
+        Integer.class, confirmed));
+  }
+
+  @Test
+  void the_candidate_index_is_built_by_the_archiver_not_at_start() {
+    jdbc.execute("DROP INDEX IF EXISTS idx_orders_terminal_updated");
+    OrderArchive archive = new OrderArchive(jdbc, 86400000);
+
+    archive.start();
+    assertNull(jdbc.queryForObject("SELECT to_regclass('idx_orders_terminal_updated')", String.class));
+
+    assertTrue(archive.ensureCandidateIndex());
+    assertTrue(jdbc.queryForObject("SELECT indisvalid FROM pg_index"
+        + " WHERE indexrelid = to_regclass('idx_orders_terminal_updated')", Boolean.class));
+  }
+
+  @Test
+  void partitions_that_are_not_monthly_are_ignored_at_start() {
+    jdbc.execute("CREATE TABLE IF NOT EXISTS orders_archive_default PARTITION OF orders_archive DEFAULT");
+    try {
+      assertDoesNotThrow(() -> new OrderArchive(jdbc, 86400000).start());
+    } finally {
+      jdbc.execute("DROP TABLE orders_archive_default");
+    }
+  }
+
+  private Order place(int quantity) {
+    return orderService.createOrder(userId, List.of(new OrderItem(productId, quantity)));
+  }
+
+  private void age(Long orderId, String date) {
+    jdbc.update("UPDATE orders SET created_at = ?::timestamptz, updated_at = ?::timestamptz WHERE id = ?",
+        date + " 12:00:00+00", date + " 12:05:00+00", orderId);
+  }
+}
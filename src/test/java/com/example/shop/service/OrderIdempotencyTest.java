@@ -0,0 +1,188 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.IdempotencyRecord;
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.IdempotencyRepository;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.web.error.ConflictException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderIdempotencyTest {
+
+  @Mock private IdempotencyRepository repo;
+  @Mock private PlatformTransactionManager txManager;
+
+  private OrderIdempotency idempotency;
+  private final List<OrderItem> items = List.of(new OrderItem("SKU-BOOK-123", 2));
+
+  @BeforeEach
+  void setup() {
+    idempotency = new OrderIdempotency(repo, new DatabaseBulkhead(10, 1000), txManager, 60_000, 100);
+    lenient().when(repo.claim(anyString(), anyString())).thenReturn(1);
+  }
+
+  @Test
+  void retry_is_answered_from_memory_without_creating_again() {
+    AtomicInteger creates = new AtomicInteger();
+    OrderIdempotency.Result first = idempotency.createOrder("k1", 1L, items, () -> order(creates.incrementAndGet()));
+    OrderIdempotency.Result retry = idempotency.createOrder("k1", 1L, items, () -> order(creates.incrementAndGet()));
+
+    assertFalse(first.replayed());
+    assertTrue(retry.replayed());
+    assertEquals(first.orderId(), retry.orderId());
+    assertEquals(1, creates.get());
+    verify(repo).recordOrder("k1", 1L);
+  }
+
+  @Test
+  void key_stored_by_another_instance_is_replayed_without_creating() {
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    idempotency.createOrder("k5", 1L, items, () -> order(7));
+    verify(repo).claim(eq("k5"), fingerprint.capture());
+    IdempotencyRecord stored = mock(IdempotencyRecord.class);
+    when(stored.getFingerprint()).thenReturn(fingerprint.getValue());
+    when(stored.getOrderId()).thenReturn(7L);
+    when(repo.claim("k5", fingerprint.getValue())).thenReturn(0);
+    when(repo.findById("k5")).thenReturn(Optional.of(stored));
+
+    // Nothing in memory: only the claim can tell the key was used
+    OrderIdempotency other = new OrderIdempotency(repo, new DatabaseBulkhead(10, 1000), txManager, 60_000, 100);
+    AtomicInteger creates = new AtomicInteger();
+    OrderIdempotency.Result retry = other.createOrder("k5", 1L, items, () -> order(creates.incrementAndGet()));
+
+    assertTrue(retry.replayed());
+    assertEquals(7L, retry.orderId());
+    assertEquals(0, creates.get());
+  }
+
+  @Test
+  void concurrent_duplicate_waits_for_the_first_request() throws Exception {
+    CountDownLatch inside = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger creates = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<OrderIdempotency.Result> first = pool.submit(() -> idempotency.createOrder("k2", 1L, items, () -> {
+        inside.countDown();
+        await(release);
+        return order(creates.incrementAndGet());
+      }));
+      assertTrue(inside.await(5, TimeUnit.SECONDS));
+      Future<OrderIdempotency.Result> second = pool.submit(() ->
+          idempotency.createOrder("k2", 1L, items, () -> order(creates.incrementAndGet())));
+      assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+      release.countDown();
+
+      assertEquals(first.get(5, TimeUnit.SECONDS).orderId(), second.get(5, TimeUnit.SECONDS).orderId());
+      assertTrue(second.get().replayed());
+      assertEquals(1, creates.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void client_errors_are_stored_and_replayed() {
+    AtomicInteger creates = new AtomicInteger();
+    ConflictException first = assertThrows(ConflictException.class, () -> idempotency.createOrder("k3", 1L, items, () -> {
+      creates.incrementAndGet();
+      throw new ConflictException("Insufficient stock for product SKU-BOOK-123");
+    }));
+    ConflictException again = assertThrows(ConflictException.class,
+        () -> idempotency.createOrder("k3", 1L, items, () -> order(creates.incrementAndGet())));
+
+    assertEquals(first.getMessage(), again.getMessage());
+    assertEquals(1, creates.get());
+    verify(repo).insertError(eq("k3"), anyString(), eq(409), eq(first.getMessage()));
+  }
+
+  @Test
+  void key_reused_for_a_different_request_is_rejected() {
+    idempotency.createOrder("k4", 1L, items, () -> order(1));
+    assertThrows(ConflictException.class, () ->
+        idempotency.createOrder("k4", 1L, List.of(new OrderItem("SKU-BOOK-123", 3)), () -> order(2)));
+  }
+
+  @Nested
+  @SpringBootTest
+  class AgainstPostgres extends PostgresIntegrationTest {
+    @Autowired private OrderService orderService;
+    @Autowired private OrderIdempotency idempotency;
+    @Autowired private IdempotencyRepository idempotencyRepo;
+    @Autowired private DatabaseBulkhead bulkhead;
+    @Autowired private PlatformTransactionManager txManager;
+    @Autowired private UserRepository userRepo;
+    @Autowired private InventoryRepository inventoryRepo;
+    @Autowired private JdbcTemplate jdbc;
+
+    @Test
+    void idempotency_key_stored_in_the_database_stops_a_retry_after_restart() {
+      User user = new User();
+      user.setEmail("retry-" + System.nanoTime() + "@example.com");
+      user.setDisplayName("Retry");
+      Long userId = userRepo.save(user).getId();
+      Inventory inv = new Inventory();
+      inv.setProductId("SKU-RETRY-" + System.nanoTime());
+      inv.setTotalStock(10);
+      inventoryRepo.save(inv);
+      List<OrderItem> lines = List.of(new OrderItem(inv.getProductId(), 1));
+
+      String key = "retry-" + System.nanoTime();
+      OrderIdempotency.Result first = idempotency.createOrder(key, userId, lines,
+          () -> orderService.createOrder(userId, lines));
+
+      // A fresh instance has nothing in memory, so only the key row can stop the second order
+      OrderIdempotency restarted = new OrderIdempotency(idempotencyRepo, bulkhead, txManager, 60_000, 100);
+      AtomicInteger creates = new AtomicInteger();
+      OrderIdempotency.Result retry = restarted.createOrder(key, userId, lines, () -> {
+        creates.incrementAndGet();
+        return orderService.createOrder(userId, lines);
+      });
+
+      assertTrue(retry.replayed());
+      assertEquals(0, creates.get());
+      assertEquals(first.orderId(), retry.orderId());
+      assertEquals(1, inventoryRepo.findByProductId(inv.getProductId()).orElseThrow().getReservedStock());
+      assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM orders WHERE user_id = ?", Integer.class, userId));
+    }
+  }
+
+  private static Order order(long id) {
+    Order o = new Order();
+    try { var f = Order.class.getDeclaredField("id"); f.setAccessible(true); f.set(o, id); } catch (Exception ignored) {}
+    return o;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
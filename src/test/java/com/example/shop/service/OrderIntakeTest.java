@@ -0,0 +1,95 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.service.reservation.InventoryReservations;
+import com.example.shop.service.reservation.ReservationMode;
+import com.example.shop.service.reservation.StripeDirectory;
+import com.example.shop.web.error.ConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderIntakeTest {
+
+  @Mock private OrderService orderService;
+  @Mock private StripeDirectory stripes;
+  @Mock private InventoryReservations reservations;
+
+  private OrderIntake intake;
+
+  @AfterEach
+  void stop() {
+    if (intake != null) intake.stop();
+  }
+
+  @Test
+  void concurrent_submissions_share_one_batch_and_get_their_own_outcome() {
+    List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    doAnswer(a -> {
+      List<PendingOrder> batch = a.getArgument(0);
+      batchSizes.add(batch.size());
+      for (PendingOrder p : batch) {
+        if (p.getItems().get(0).getQuantity() > 5) p.reject(new ConflictException("Insufficient stock"));
+        else p.accept(new Order());
+      }
+      return null;
+    }).when(orderService).createOrderBatch(anyList());
+    intake = start(50, 200);
+
+    List<CompletableFuture<Order>> results = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      results.add(intake.submit(1L, List.of(new OrderItem("SKU-BOOK-123", i))));
+    }
+
+    for (int i = 0; i < 10; i++) {
+      CompletableFuture<Order> r = results.get(i);
+      if (i > 5) {
+        CompletionException ex = assertThrows(CompletionException.class, r::join);
+        assertInstanceOf(ConflictException.class, ex.getCause());
+      } else {
+        assertNotNull(r.join());
+      }
+    }
+    assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+    assertTrue(batchSizes.size() < 10);
+  }
+
+  @Test
+  void striped_products_bypass_the_batch() {
+    when(stripes.isStriped("SKU-HOT")).thenReturn(true);
+    when(orderService.createOrder(eq(1L), anyList())).thenReturn(new Order());
+    intake = start(50, 5);
+    assertNotNull(intake.submit(1L, List.of(new OrderItem("SKU-HOT", 1))).join());
+    verify(orderService, never()).createOrderBatch(anyList());
+  }
+
+  @Test
+  void refuses_to_start_with_a_mode_it_would_bypass() {
+    when(reservations.getMode()).thenReturn(ReservationMode.CONDITIONAL_UPDATE);
+    assertThrows(IllegalStateException.class, () -> new OrderIntake(orderService, stripes, reservations, 50, 5, 100, 1,
+        new SimpleMeterRegistry()));
+  }
+
+  private OrderIntake start(int maxBatchSize, long maxWaitMs) {
+    when(reservations.getMode()).thenReturn(ReservationMode.PESSIMISTIC);
+    OrderIntake i = new OrderIntake(orderService, stripes, reservations, maxBatchSize, maxWaitMs, 100, 1,
+        new SimpleMeterRegistry());
+    i.start();
+    return i;
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.security.JwtService;
+import com.example.shop.support.PostgresIntegrationTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class OrderMetricsTest extends PostgresIntegrationTest {
+
+  @Autowired private OrderService orderService;
+  @Autowired private UserRepository userRepo;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private MeterRegistry registry;
+  @Autowired private JwtService jwtService;
+  @Autowired private MockMvc mvc;
+
+  @Test
+  void order_creation_times_its_commit_and_pool_wait_is_metered() {
+    User user = new User();
+    user.setEmail("metrics-" + System.nanoTime() + "@example.com");
+    user.setDisplayName("Metrics");
+    user = userRepo.save(user);
+    Inventory inv = new Inventory();
+    inv.setProductId("SKU-METRICS-" + System.nanoTime());
+    inv.setTotalStock(10);
+    inventoryRepo.save(inv);
+
+    Timer commit = registry.get("shop.orders.create.phase").tag("phase", "commit").timer();
+    long before = commit.count();
+    orderService.createOrder(user.getId(), List.of(new OrderItem(inv.getProductId(), 1)));
+    assertEquals(before + 1, commit.count());
+    assertTrue(registry.get("hikaricp.connections.acquire").timer().count() > 0);
+  }
+
+  @Test
+  void metrics_need_an_admin_but_health_does_not() throws Exception {
+    String user = "Bearer " + jwtService.generateToken("demo@example.com", List.of("USER"));
+    String admin = "Bearer " + jwtService.generateToken("admin@example.com", List.of("ADMIN"));
+
+    mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    mvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+    mvc.perform(get("/actuator/metrics").header("Authorization", user)).andExpect(status().isForbidden());
+    mvc.perform(get("/actuator/metrics/shop.orders.create.phase").header("Authorization", admin)).andExpect(status().isOk());
+  }
+}
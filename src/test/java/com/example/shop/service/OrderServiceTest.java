@@ -4,15 +4,21 @@ package com.example.shop.service;
 import com.example.shop.domain.*;
 import com.example.shop.repository.InventoryRepository;
 import com.example.shop.repository.OrderRepository;
+import com.example.shop.repository.OrderRow;
+import com.example.shop.repository.OrderSummary;
 import com.example.shop.repository.UserRepository;
+import com.example.shop.service.reservation.*;
 import com.example.shop.web.error.BadRequestException;
 import com.example.shop.web.error.ConflictException;
 import com.example.shop.web.error.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 
 import java.util.*;
 
@@ -25,8 +31,14 @@ class OrderServiceTest {
   @Mock private OrderRepository orderRepo;
   @Mock private UserRepository userRepo;
   @Mock private InventoryRepository inventoryRepo;
+  @Mock private BucketReservations buckets;
+  @Mock private ApplicationEventPublisher events;
+  @Mock private OrderArchive archive;
 
-  @InjectMocks private OrderService orderService;
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final OrderMetrics metrics = new OrderMetrics(registry, 1);
+  private final AvailabilityIndex availability = new AvailabilityIndex(100, 60_000, registry);
+  private OrderService orderService;
 
   private User user;
 
@@ -36,7 +48,8 @@ class OrderServiceTest {
     try { var idField = User.class.getDeclaredField("id"); idField.setAccessible(true); idField.set(user, 1L);} catch (Exception ignored) {}
     user.setEmail("demo@example.com");
     user.setDisplayName("Demo User");
-    when(userRepo.findById(1L)).thenReturn(Optional.of(user));
+    lenient().when(userRepo.findById(1L)).thenReturn(Optional.of(user));
+    orderService = service(ReservationMode.PESSIMISTIC);
   }
 
   @Test
@@ -54,6 +67,13 @@ class OrderServiceTest {
     assertEquals(5, invBook.getReservedStock());
     assertEquals(2, invMug.getReservedStock());
     verify(orderRepo).save(any(Order.class));
+    verify(events).publishEvent(new ReservationsChangedEvent(Set.of("SKU-BOOK-123", "SKU-MUG-456")));
+    for (String phase : List.of("user_lookup", "reserve", "order_insert")) {
+      assertEquals(1, registry.get("shop.orders.create.phase").tag("phase", phase).timer().count(), phase);
+    }
+    // Only one SKU gets its own tag here; the second product is folded into "other"
+    assertEquals(1, registry.get("shop.inventory.lock.wait").tag("sku", "SKU-BOOK-123").timer().count());
+    assertEquals(1, registry.get("shop.inventory.lock.wait").tag("sku", "other").timer().count());
   }
 
   @Test
@@ -66,7 +86,16 @@ class OrderServiceTest {
     when(inventoryRepo.save(any())).thenAnswer(a -> a.getArgument(0));
     ConflictException ex = assertThrows(ConflictException.class, () -> orderService.createOrder(1L, items));
     assertTrue(ex.getMessage().contains("Insufficient stock"));
+    assertEquals("insufficient_stock", ex.getReason());
     verify(orderRepo, never()).save(any(Order.class));
+    assertEquals(1, registry.get("shop.inventory.conflicts").tag("sku", "SKU-MUG-456").counter().count());
+
+    // The failure leaves an upper bound behind: fewer than 10 mugs, so 10 more are turned away early
+    assertThrows(ConflictException.class, () -> availability.check(List.of(new OrderItem("SKU-MUG-456", 10))));
+    availability.check(List.of(new OrderItem("SKU-MUG-456", 1)));
+    availability.onReservationsChanged(new ReservationsChangedEvent(Set.of("SKU-MUG-456")));
+    availability.check(List.of(new OrderItem("SKU-MUG-456", 10)));
+    assertEquals(1, registry.get("shop.orders.availability.rejections").counter().count());
   }
 
   @Test
@@ -77,7 +106,7 @@ class OrderServiceTest {
   @Test
   void confirmOrder_changes_status_if_pending() {
     Order o = new Order(); o.setUser(user); o.setItems(List.of(new OrderItem("SKU-1", 1))); o.setStatus(OrderStatus.PENDING);
-    when(orderRepo.findById(42L)).thenReturn(Optional.of(o));
+    when(orderRepo.lockById(42L)).thenReturn(Optional.of(o));
     when(orderRepo.save(any())).thenAnswer(a -> a.getArgument(0));
     Order res = orderService.confirmOrder(42L);
     assertEquals(OrderStatus.CONFIRMED, res.getStatus());
@@ -86,7 +115,7 @@ class OrderServiceTest {
   @Test
   void confirmOrder_conflict_if_not_pending() {
     Order o = new Order(); o.setUser(user); o.setStatus(OrderStatus.CANCELLED);
-    when(orderRepo.findById(99L)).thenReturn(Optional.of(o));
+    when(orderRepo.lockById(99L)).thenReturn(Optional.of(o));
     assertThrows(ConflictException.class, () -> orderService.confirmOrder(99L));
   }
 
@@ -97,7 +126,7 @@ class OrderServiceTest {
     o.setStatus(OrderStatus.PENDING);
     Inventory invBook = inv("SKU-BOOK-123", 10, 5);
     Inventory invMug  = inv("SKU-MUG-456", 5, 2);
-    when(orderRepo.findById(7L)).thenReturn(Optional.of(o));
+    when(orderRepo.lockById(7L)).thenReturn(Optional.of(o));
     when(inventoryRepo.lockByProductId("SKU-BOOK-123")).thenReturn(Optional.of(invBook));
     when(inventoryRepo.lockByProductId("SKU-MUG-456")).thenReturn(Optional.of(invMug));
     when(orderRepo.save(any())).thenAnswer(a -> a.getArgument(0));
@@ -107,12 +136,179 @@ class OrderServiceTest {
     assertEquals(1, invMug.getReservedStock());
   }
 
+  @Test
+  void createOrder_conditional_update_reserves_without_locking() {
+    orderService = service(ReservationMode.CONDITIONAL_UPDATE);
+    var items = List.of(new OrderItem("SKU-MUG-456", 1), new OrderItem("SKU-BOOK-123", 2));
+    when(inventoryRepo.tryReserve(anyString(), anyInt())).thenReturn(1);
+    when(orderRepo.save(any())).thenAnswer(a -> a.getArgument(0));
+    Order created = orderService.createOrder(1L, items);
+    assertEquals(OrderStatus.PENDING, created.getStatus());
+    InOrder inOrder = inOrder(inventoryRepo);
+    inOrder.verify(inventoryRepo).tryReserve("SKU-BOOK-123", 2);
+    inOrder.verify(inventoryRepo).tryReserve("SKU-MUG-456", 1);
+    verify(inventoryRepo, never()).lockByProductId(anyString());
+    verify(inventoryRepo, never()).findByProductId(anyString());
+  }
+
+  @Test
+  void createOrder_conditional_update_conflict_when_no_row_updated() {
+    orderService = service(ReservationMode.CONDITIONAL_UPDATE);
+    var items = List.of(new OrderItem("SKU-MUG-456", 10));
+    when(inventoryRepo.tryReserve("SKU-MUG-456", 10)).thenReturn(0);
+    when(inventoryRepo.findByProductId("SKU-MUG-456")).thenReturn(Optional.of(inv("SKU-MUG-456", 5, 4)));
+    ConflictException ex = assertThrows(ConflictException.class, () -> orderService.createOrder(1L, items));
+    assertTrue(ex.getMessage().contains("available=1"));
+    verify(orderRepo, never()).save(any(Order.class));
+  }
+
+  @Test
+  void createOrder_conditional_update_not_found_for_unknown_product() {
+    orderService = service(ReservationMode.CONDITIONAL_UPDATE);
+    when(inventoryRepo.tryReserve("SKU-X", 1)).thenReturn(0);
+    when(inventoryRepo.findByProductId("SKU-X")).thenReturn(Optional.empty());
+    assertThrows(NotFoundException.class, () -> orderService.createOrder(1L, List.of(new OrderItem("SKU-X", 1))));
+  }
+
+  @Test
+  void cancelOrder_conditional_update_releases_with_single_statement() {
+    orderService = service(ReservationMode.CONDITIONAL_UPDATE);
+    Order o = new Order(); o.setUser(user);
+    o.setItems(List.of(new OrderItem("SKU-MUG-456", 1), new OrderItem("SKU-BOOK-123", 2)));
+    o.setStatus(OrderStatus.PENDING);
+    when(orderRepo.lockById(8L)).thenReturn(Optional.of(o));
+    when(inventoryRepo.release(anyString(), anyInt())).thenReturn(1);
+    when(orderRepo.save(any())).thenAnswer(a -> a.getArgument(0));
+    assertEquals(OrderStatus.CANCELLED, orderService.cancelOrder(8L).getStatus());
+    InOrder inOrder = inOrder(inventoryRepo);
+    inOrder.verify(inventoryRepo).release("SKU-BOOK-123", 2);
+    inOrder.verify(inventoryRepo).release("SKU-MUG-456", 1);
+    verify(inventoryRepo, never()).lockByProductId(anyString());
+  }
+
+  @Test
+  void createOrderBatch_isolates_orders_that_run_out_of_stock() {
+    Inventory invBook = inv("SKU-BOOK-123", 10, 0);
+    Inventory invMug  = inv("SKU-MUG-456", 2, 0);
+    when(userRepo.findAllById(any())).thenReturn(List.of(user));
+    when(inventoryRepo.lockAllByProductIdIn(any())).thenReturn(List.of(invBook, invMug));
+    PendingOrder first  = new PendingOrder(1L, List.of(new OrderItem("SKU-MUG-456", 2), new OrderItem("SKU-BOOK-123", 1)));
+    PendingOrder second = new PendingOrder(1L, List.of(new OrderItem("SKU-BOOK-123", 3), new OrderItem("SKU-MUG-456", 1)));
+    PendingOrder third  = new PendingOrder(1L, List.of(new OrderItem("SKU-BOOK-123", 4)));
+    PendingOrder fourth = new PendingOrder(2L, List.of(new OrderItem("SKU-BOOK-123", 1)));
+
+    orderService.createOrderBatch(List.of(first, second, third, fourth));
+
+    assertFalse(first.isRejected());
+    assertTrue(second.isRejected());
+    assertFalse(third.isRejected());
+    assertTrue(fourth.isRejected());
+    assertEquals(5, invBook.getReservedStock());
+    assertEquals(2, invMug.getReservedStock());
+    verify(inventoryRepo).lockAllByProductIdIn(argThat(ids -> new ArrayList<>(ids).equals(List.of("SKU-BOOK-123", "SKU-MUG-456"))));
+    verify(orderRepo).saveAll(argThat((List<Order> orders) -> orders.size() == 2));
+    verify(inventoryRepo, never()).lockByProductId(anyString());
+  }
+
+  @Test
+  void expireOrders_releases_merged_lines_of_still_pending_orders() {
+    var now = java.time.OffsetDateTime.now();
+    when(orderRepo.lockPendingIds(List.of(1L, 2L, 3L))).thenReturn(List.of(1L, 3L));
+    when(orderRepo.findRowsByIdIn(List.of(1L, 3L))).thenReturn(List.of(
+        new OrderRow(1L, 1L, OrderStatus.PENDING, now, now, "SKU-MUG-456", 1),
+        new OrderRow(3L, 1L, OrderStatus.PENDING, now, now, "SKU-MUG-456", 2),
+        new OrderRow(3L, 1L, OrderStatus.PENDING, now, now, "SKU-BOOK-123", 4)));
+    Inventory invBook = inv("SKU-BOOK-123", 10, 5);
+    Inventory invMug  = inv("SKU-MUG-456", 5, 3);
+    when(inventoryRepo.lockByProductId("SKU-BOOK-123")).thenReturn(Optional.of(invBook));
+    when(inventoryRepo.lockByProductId("SKU-MUG-456")).thenReturn(Optional.of(invMug));
+
+    assertEquals(2, orderService.expireOrders(List.of(1L, 2L, 3L)));
+    assertEquals(1, invBook.getReservedStock());
+    assertEquals(0, invMug.getReservedStock());
+    InOrder order = inOrder(inventoryRepo);
+    order.verify(inventoryRepo).lockByProductId("SKU-BOOK-123");
+    order.verify(inventoryRepo).lockByProductId("SKU-MUG-456");
+    verify(orderRepo).updateStatus(eq(List.of(1L, 3L)), eq(OrderStatus.CANCELLED), any());
+  }
+
+  @Test
+  void confirmOrders_updates_pending_ids_at_once_and_explains_the_rest() {
+    var now = java.time.OffsetDateTime.now();
+    when(orderRepo.confirmPending(eq(Set.of(1L, 2L, 3L)), any())).thenReturn(List.of(1L));
+    when(orderRepo.findRowsByIdIn(List.of(1L))).thenReturn(List.of(
+        new OrderRow(1L, 1L, OrderStatus.CONFIRMED, now, now, "SKU-MUG-456", 1)));
+    when(orderRepo.findSummariesByIdIn(List.of(3L, 2L))).thenReturn(List.of(
+        new OrderSummary(2L, OrderStatus.CANCELLED, now, now)));
+
+    List<OrderTransition> result = orderService.confirmOrders(List.of(3L, 1L, 2L, 1L));
+    assertEquals(List.of(
+        new OrderTransition(3L, OrderTransition.Outcome.NOT_FOUND, null),
+        new OrderTransition(1L, OrderTransition.Outcome.APPLIED, OrderStatus.CONFIRMED),
+        new OrderTransition(2L, OrderTransition.Outcome.INVALID_STATE, OrderStatus.CANCELLED)), result);
+    verify(events).publishEvent(argThat((Object e) -> e instanceof OrderStatusChangedEvent c
+        && c.orderId().equals(1L) && c.status() == OrderStatus.CONFIRMED));
+    verify(orderRepo, never()).save(any());
+    assertThrows(BadRequestException.class, () -> orderService.cancelOrders(List.of()));
+  }
+
   @Test
   void getOrderById_not_found() {
     when(orderRepo.findById(55L)).thenReturn(Optional.empty());
     assertThrows(NotFoundException.class, () -> orderService.getOrderById(55L));
   }
 
+  @Test
+  void getOrderView_assembles_joined_rows() {
+    var now = java.time.OffsetDateTime.now();
+    when(orderRepo.findRowsById(9L)).thenReturn(List.of(
+        new OrderRow(9L, 1L, OrderStatus.PENDING, now, now, "SKU-A", 2),
+        new OrderRow(9L, 1L, OrderStatus.PENDING, now, now, "SKU-B", 1)));
+    OrderView view = orderService.getOrderView(9L);
+    assertEquals(1L, view.userId());
+    assertEquals(List.of(new OrderItem("SKU-A", 2), new OrderItem("SKU-B", 1)), view.items());
+
+    when(orderRepo.findRowsById(10L)).thenReturn(List.of(new OrderRow(10L, 1L, OrderStatus.CANCELLED, now, now, null, null)));
+    assertTrue(orderService.getOrderView(10L).items().isEmpty());
+    when(orderRepo.findRowsById(55L)).thenReturn(List.of());
+    assertThrows(NotFoundException.class, () -> orderService.getOrderView(55L));
+  }
+
+  @Test
+  void listUserOrders_fetches_one_extra_row_to_build_the_next_cursor() {
+    var t = java.time.OffsetDateTime.parse("2026-01-01T10:00:00Z");
+    var rows = List.of(new OrderSummary(30L, OrderStatus.PENDING, t, t),
+        new OrderSummary(20L, OrderStatus.PENDING, t, t),
+        new OrderSummary(10L, OrderStatus.PENDING, t.minusHours(1), t));
+    when(orderRepo.findPageByUser(eq(1L), any(), eq(Long.MAX_VALUE), eq(Limit.of(3)))).thenReturn(rows);
+    OrderPage first = orderService.listUserOrders(1L, null, null, 2);
+    assertEquals(List.of(30L, 20L), first.items().stream().map(OrderSummary::id).toList());
+    assertEquals(new OrderCursor(t, 20L), OrderCursor.decode(first.nextCursor()));
+
+    when(orderRepo.findPageByUserAndStatus(1L, OrderStatus.PENDING, t, 20L, Limit.of(3))).thenReturn(rows.subList(2, 3));
+    OrderPage last = orderService.listUserOrders(1L, "pending", first.nextCursor(), 2);
+    assertEquals(1, last.items().size());
+    assertNull(last.nextCursor());
+  }
+
+  @Test
+  void listUserOrders_rejects_bad_input_and_unknown_users() {
+    assertThrows(BadRequestException.class, () -> orderService.listUserOrders(1L, null, null, 0));
+    assertThrows(BadRequestException.class, () -> orderService.listUserOrders(1L, null, null, 101));
+    assertThrows(BadRequestException.class, () -> orderService.listUserOrders(1L, "SHIPPED", null, 10));
+    assertThrows(BadRequestException.class, () -> orderService.listUserOrders(1L, null, "not-a-cursor", 10));
+    when(orderRepo.findPageByUser(eq(2L), any(), any(), any())).thenReturn(List.of());
+    when(userRepo.existsById(2L)).thenReturn(false);
+    assertThrows(NotFoundException.class, () -> orderService.listUserOrders(2L, null, null, 10));
+  }
+
+  private OrderService service(ReservationMode mode) {
+    var reservations = new InventoryReservations(List.of(
+        new PessimisticReservationStrategy(inventoryRepo),
+        new ConditionalUpdateReservationStrategy(inventoryRepo)), buckets, inventoryRepo, mode, metrics, availability);
+    return new OrderService(orderRepo, userRepo, reservations, events, metrics, archive);
+  }
+
   private Inventory inv(String productId, int total, int reserved) {
     Inventory i = new Inventory(); i.setProductId(productId); i.setTotalStock(total); i.setReservedStock(reserved); return i;
   }
@@ -0,0 +1,168 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(StatementCounter.Config.class)
+class OrderStatementCountTest extends PostgresIntegrationTest {
+
+  @Autowired private OrderService orderService;
+  @Autowired private UserRepository userRepo;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private JdbcTemplate jdbc;
+  @Autowired private StatementCounter counter;
+
+  private User user;
+  private final List<OrderItem> items = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    user = new User();
+    user.setEmail("count-" + System.nanoTime() + "@example.com");
+    user.setDisplayName("Counter");
+    user = userRepo.save(user);
+    List<Inventory> rows = new ArrayList<>();
+    items.clear();
+    for (int i = 0; i < 20; i++) {
+      String productId = "SKU-COUNT-" + System.nanoTime() + "-" + i;
+      Inventory inv = new Inventory(); inv.setProductId(productId); inv.setTotalStock(100);
+      rows.add(inv);
+      items.add(new OrderItem(productId, 1));
+    }
+    inventoryRepo.saveAll(rows);
+  }
+
+  @Test
+  void twenty_item_order_batches_its_inserts_and_updates() {
+    counter.start();
+    Order order = orderService.createOrder(user.getId(), items);
+    List<StatementCounter.Execution> executed = counter.stop();
+
+    // 1 user select + 20 row locks + 4 batches: inventory updates, the order insert, the 20
+    // order_items inserts and the outbox row; plus the outbox_event_seq nextval and an orders_seq
+    // one unless an earlier test left ids in the pool
+    assertTrue(nextvals(executed) <= 2, () -> describe(executed));
+    assertEquals(25, executed.size() - nextvals(executed), () -> describe(executed));
+    assertEquals(4, executed.stream().filter(StatementCounter.Execution::batch).count(), () -> describe(executed));
+    assertEquals(20, jdbc.queryForObject("SELECT COUNT(*) FROM order_items WHERE order_id = ?", Integer.class, order.getId()));
+  }
+
+  @Test
+  void order_view_is_read_with_one_query() {
+    Order order = orderService.createOrder(user.getId(), items);
+
+    counter.start();
+    OrderView view = orderService.getOrderView(order.getId());
+    List<StatementCounter.Execution> executed = counter.stop();
+
+    assertEquals(1, executed.size(), () -> describe(executed));
+    assertEquals(user.getId(), view.userId());
+    assertEquals(20, view.items().size());
+  }
+
+  @Test
+  void user_order_pages_are_one_query_each_until_the_archive_is_reached_and_do_not_overlap() {
+    List<Long> created = new ArrayList<>();
+    for (int i = 0; i < 5; i++) created.add(orderService.createOrder(user.getId(), items.subList(i, i + 1)).getId());
+
+    List<Long> seen = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      counter.start();
+      OrderPage page = orderService.listUserOrders(user.getId(), null, cursor, 2);
+      List<StatementCounter.Execution> executed = counter.stop();
+      // Only the page where the user's hot orders run out also reads the archive
+      assertEquals(page.nextCursor() == null ? 2 : 1, executed.size(), () -> describe(executed));
+      page.items().forEach(o -> seen.add(o.id()));
+      cursor = page.nextCursor();
+      pages++;
+    } while (cursor != null);
+
+    assertEquals(3, pages);
+    assertEquals(created.reversed(), seen);
+    assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM pg_indexes WHERE tablename = 'orders'"
+        + " AND indexname IN ('idx_orders_user_created', 'idx_orders_user_status_created')", Integer.class));
+  }
+
+  @Test
+  void expiring_a_batch_locks_reads_and_updates_orders_once() {
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 4; i++) ids.add(orderService.createOrder(user.getId(), items.subList(i, i + 1)).getId());
+    orderService.cancelOrder(ids.get(3));
+
+    counter.start();
+    int expired = orderService.expireOrders(ids);
+    List<StatementCounter.Execution> executed = counter.stop();
+
+    assertEquals(3, expired);
+    // pending ids + order lines + the bucket check + 3 inventory row locks + 3 batches: inventory,
+    // order status and the outbox rows, whose ids are taken one nextval each
+    assertEquals(3, nextvals(executed), () -> describe(executed));
+    assertEquals(9, executed.size() - nextvals(executed), () -> describe(executed));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(0, inventoryRepo.findByProductId(items.get(i).getProductId()).orElseThrow().getReservedStock());
+    }
+    assertEquals(4, jdbc.queryForObject("SELECT COUNT(*) FROM orders WHERE status = 'CANCELLED' AND id IN (?, ?, ?, ?)",
+        Integer.class, ids.toArray()));
+  }
+
+  @Test
+  void bulk_confirm_is_one_update_and_bulk_cancel_locks_each_product_once() {
+    List<Long> ids = new ArrayList<>();
+    // Orders 0-3 share the first product, so a bulk cancel must sum their quantities
+    for (int i = 0; i < 4; i++) ids.add(orderService.createOrder(user.getId(), List.of(items.get(0), items.get(i + 1))).getId());
+
+    counter.start();
+    List<OrderTransition> confirmed = orderService.confirmOrders(List.of(ids.get(0), ids.get(1), -1L));
+    List<StatementCounter.Execution> executed = counter.stop();
+    // UPDATE ... RETURNING, the order lines, the outbox batch and the lookup of the unapplied id,
+    // plus one outbox_event_seq nextval per event
+    assertEquals(2, nextvals(executed), () -> describe(executed));
+    assertEquals(4, executed.size() - nextvals(executed), () -> describe(executed));
+    assertEquals(List.of(OrderTransition.Outcome.APPLIED, OrderTransition.Outcome.APPLIED,
+        OrderTransition.Outcome.NOT_FOUND), confirmed.stream().map(OrderTransition::outcome).toList());
+
+    counter.start();
+    List<OrderTransition> cancelled = orderService.cancelOrders(ids);
+    List<StatementCounter.Execution> cancelExecuted = counter.stop();
+    assertEquals(List.of(OrderTransition.Outcome.INVALID_STATE, OrderTransition.Outcome.INVALID_STATE,
+        OrderTransition.Outcome.APPLIED, OrderTransition.Outcome.APPLIED),
+        cancelled.stream().map(OrderTransition::outcome).toList());
+    assertEquals(3, cancelExecuted.stream().filter(e -> e.sql().contains("from inventory ")).count(),
+        () -> describe(cancelExecuted));
+    assertEquals(1, cancelExecuted.stream().filter(e -> e.sql().contains("from inventory_buckets")).count(),
+        () -> describe(cancelExecuted));
+    // Two confirmed orders still hold one unit each of the shared product
+    assertEquals(2, inventoryRepo.findByProductId(items.get(0).getProductId()).orElseThrow().getReservedStock());
+    assertEquals(0, inventoryRepo.findByProductId(items.get(3).getProductId()).orElseThrow().getReservedStock());
+  }
+
+  private static long nextvals(List<StatementCounter.Execution> executed) {
+    return executed.stream().filter(e -> e.sql().contains("nextval")).count();
+  }
+
+  private static String describe(List<StatementCounter.Execution> executed) {
+    StringBuilder sb = new StringBuilder("Executed:");
+    executed.forEach(e -> sb.append("\n  ").append(e.batch() ? "[batch] " : "").append(e.sql()));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,288 @@
+package com.example.shop.service;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.service.reservation.ReservationEngine;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.ServiceUnavailableException;
+import com.example.shop.web.error.TooManyRequestsException;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fires a concurrent mix of create, confirm and cancel calls at each reservation mode, with
+ * products drawn from a Zipf distribution so a few hot SKUs take most of the traffic, then checks
+ * the stock invariants in the database. The load is small by default; scale it with system
+ * properties, e.g. {@code -Dstress.threads=64 -Dstress.operations=20000 -Dstress.skus=200}.
+ *
+ * <p>Confirmed orders keep their reservation, so reserved stock must equal the quantities of all
+ * PENDING and CONFIRMED orders.
+ */
+class OrderStressTest {
+  private static final Logger log = LoggerFactory.getLogger(OrderStressTest.class);
+
+  private static final int THREADS = Integer.getInteger("stress.threads", 16);
+  private static final int OPERATIONS = Integer.getInteger("stress.operations", 600);
+  private static final int SKUS = Integer.getInteger("stress.skus", 20);
+  private static final int STOCK_PER_SKU = Integer.getInteger("stress.stock-per-sku", 40);
+  private static final int MAX_LINES = Integer.getInteger("stress.max-lines", 4);
+  private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("stress.zipf-exponent", "1.1"));
+  /** Percent of operations that create; the rest are split evenly between confirm and cancel. */
+  private static final int CREATE_PERCENT = Integer.getInteger("stress.create-percent", 60);
+  private static final long SEED = Long.getLong("stress.seed", 42L);
+  private static final int MAX_ATTEMPTS = 5;
+
+  @Nested
+  @SpringBootTest(properties = "app.inventory.reservation-mode=PESSIMISTIC")
+  class Pessimistic extends StressRun {
+
+    /** Bulk confirm, bulk cancel and expiry over the same orders, each listing them in its own order. */
+    @Test
+    void overlapping_bulk_confirm_and_cancel_do_not_deadlock() throws Exception {
+      String productId = "SKU-STRESS-BULK-" + System.nanoTime();
+      Inventory inv = new Inventory(); inv.setProductId(productId); inv.setTotalStock(10_000);
+      inventoryRepo.save(inv);
+      User user = new User();
+      user.setEmail("stress-bulk-" + System.nanoTime() + "@example.com");
+      user.setDisplayName("Stress");
+      Long userId = userRepo.save(user).getId();
+
+      ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+      try {
+        for (int round = 0; round < 10; round++) {
+          List<Long> ids = new ArrayList<>();
+          for (int i = 0; i < 50; i++) ids.add(orderService.createOrder(userId, List.of(new OrderItem(productId, 1))).getId());
+          AtomicInteger applied = new AtomicInteger();
+          List<Future<?>> calls = new ArrayList<>();
+          for (int t = 0; t < THREADS; t++) {
+            List<Long> mine = new ArrayList<>(ids);
+            Collections.shuffle(mine, new Random(SEED + round * THREADS + t));
+            int kind = t % 3;
+            calls.add(pool.submit(() -> {
+              if (kind == 2) {
+                applied.addAndGet(orderService.expireOrders(mine));
+                return null;
+              }
+              List<OrderTransition> result = kind == 0 ? orderService.confirmOrders(mine) : orderService.cancelOrders(mine);
+              result.forEach(r -> { if (r.outcome() == OrderTransition.Outcome.APPLIED) applied.incrementAndGet(); });
+              return null;
+            }));
+          }
+          for (Future<?> call : calls) call.get(1, TimeUnit.MINUTES);
+          assertEquals(ids.size(), applied.get(), "every order changes state exactly once");
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+      // A deadlock would have failed one of the calls above; confirmed orders keep their stock
+      assertEquals(jdbc.queryForObject("SELECT COALESCE(SUM(oi.quantity), 0) FROM order_items oi"
+              + " JOIN orders o ON o.id = oi.order_id WHERE o.status = 'CONFIRMED' AND oi.product_id = ?", Integer.class, productId),
+          inventoryRepo.findByProductId(productId).orElseThrow().getReservedStock());
+    }
+  }
+
+  @Nested
+  @SpringBootTest(properties = "app.inventory.reservation-mode=BOUNDED_WAIT")
+  class BoundedWait extends StressRun { }
+
+  @Nested
+  @SpringBootTest(properties = "app.inventory.reservation-mode=CONDITIONAL_UPDATE")
+  class ConditionalUpdate extends StressRun { }
+
+  @Nested
+  @SpringBootTest(properties = "app.inventory.reservation-mode=OPTIMISTIC")
+  class Optimistic extends StressRun { }
+
+  @Nested
+  @SpringBootTest(properties = {
+      "app.inventory.reservation-mode=IN_MEMORY",
+      "app.inventory.engine.journal-dir=${java.io.tmpdir}/stress-journal-${random.uuid}"
+  })
+  class InMemory extends StressRun { }
+
+  abstract static class StressRun extends PostgresIntegrationTest {
+    @Autowired OrderService orderService;
+    @Autowired UserRepository userRepo;
+    @Autowired InventoryRepository inventoryRepo;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired private ObjectProvider<ReservationEngine> engine;
+    @Value("${app.inventory.reservation-mode}") private String mode;
+
+    private final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger confirmed = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger lockFailures = new AtomicInteger();
+    private final Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void concurrent_mix_never_oversells() throws Exception {
+      String prefix = "SKU-STRESS-" + mode.replace('_', '-') + "-" + System.nanoTime() + "-";
+      User user = new User();
+      user.setEmail("stress-" + System.nanoTime() + "@example.com");
+      user.setDisplayName("Stress");
+      Long userId = userRepo.save(user).getId();
+      List<Inventory> rows = new ArrayList<>(SKUS);
+      for (int i = 0; i < SKUS; i++) {
+        Inventory inv = new Inventory(); inv.setProductId(prefix + i); inv.setTotalStock(STOCK_PER_SKU);
+        rows.add(inv);
+      }
+      inventoryRepo.saveAll(rows);
+
+      Zipf zipf = new Zipf(SKUS, ZIPF_EXPONENT);
+      long[] latencies = new long[OPERATIONS];
+      AtomicInteger next = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        Random random = new Random(SEED + t);
+        workers.add(pool.submit(() -> {
+          start.await();
+          for (int op = next.getAndIncrement(); op < OPERATIONS; op = next.getAndIncrement()) {
+            long began = System.nanoTime();
+            runOne(random, zipf, prefix, userId);
+            latencies[op] = System.nanoTime() - began;
+          }
+          return null;
+        }));
+      }
+      long began = System.nanoTime();
+      start.countDown();
+      for (Future<?> w : workers) w.get(5, TimeUnit.MINUTES);
+      long elapsedNanos = System.nanoTime() - began;
+      pool.shutdown();
+
+      Arrays.sort(latencies);
+      log.info("{}: {} ops by {} threads in {} ms ({} ops/s), p50={} ms p99={} ms p999={} ms; "
+              + "created={} confirmed={} cancelled={} conflicts={} retries={} lockFailures={}",
+          mode, OPERATIONS, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+          String.format("%.1f", OPERATIONS * 1e9 / elapsedNanos),
+          millis(latencies, 0.50), millis(latencies, 0.99), millis(latencies, 0.999),
+          created, confirmed, cancelled, conflicts, retries, lockFailures);
+
+      assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+      engine.ifAvailable(ReservationEngine::flush);
+      assertInvariants(prefix);
+    }
+
+    private void runOne(Random random, Zipf zipf, String prefix, Long userId) {
+      int roll = random.nextInt(100);
+      Long orderId = roll < CREATE_PERCENT ? null : pending.poll();
+      try {
+        if (orderId == null) {
+          Order order = withRetries(() -> orderService.createOrder(userId, randomItems(random, zipf, prefix)));
+          pending.add(order.getId());
+          created.incrementAndGet();
+        } else if (roll < CREATE_PERCENT + (100 - CREATE_PERCENT) / 2) {
+          withRetries(() -> orderService.confirmOrder(orderId));
+          confirmed.incrementAndGet();
+        } else {
+          withRetries(() -> orderService.cancelOrder(orderId));
+          cancelled.incrementAndGet();
+        }
+      } catch (ConflictException ex) {
+        conflicts.incrementAndGet();
+      } catch (RuntimeException ex) {
+        unexpected.add(ex);
+      }
+    }
+
+    /** Retries what a client would retry: bounded-wait rejections and lock timeouts or deadlocks. */
+    private <T> T withRetries(Supplier<T> call) {
+      for (int attempt = 1; ; attempt++) {
+        try {
+          return call.get();
+        } catch (ServiceUnavailableException | TooManyRequestsException | PessimisticLockingFailureException ex) {
+          if (ex instanceof PessimisticLockingFailureException) lockFailures.incrementAndGet();
+          if (attempt == MAX_ATTEMPTS) throw ex;
+          retries.incrementAndGet();
+          try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(5, 20));
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw ex;
+          }
+        }
+      }
+    }
+
+    private List<OrderItem> randomItems(Random random, Zipf zipf, String prefix) {
+      Map<String, Integer> lines = new LinkedHashMap<>();
+      int count = 1 + random.nextInt(MAX_LINES);
+      for (int i = 0; i < count; i++) {
+        lines.merge(prefix + zipf.sample(random), 1 + random.nextInt(3), Integer::sum);
+      }
+      List<OrderItem> items = new ArrayList<>(lines.size());
+      lines.forEach((productId, quantity) -> items.add(new OrderItem(productId, quantity)));
+      return items;
+    }
+
+    private void assertInvariants(String prefix) {
+      Map<String, Long> held = new HashMap<>();
+      jdbc.query("SELECT oi.product_id, SUM(oi.quantity) FROM order_items oi JOIN orders o ON o.id = oi.order_id"
+              + " WHERE o.status IN ('PENDING', 'CONFIRMED') AND oi.product_id LIKE ? GROUP BY oi.product_id",
+          rs -> { held.put(rs.getString(1), rs.getLong(2)); }, prefix + "%");
+      AtomicLong checked = new AtomicLong();
+      jdbc.query("SELECT product_id, total_stock, reserved_stock FROM inventory WHERE product_id LIKE ?", rs -> {
+        String productId = rs.getString(1);
+        int total = rs.getInt(2);
+        int reserved = rs.getInt(3);
+        assertTrue(total >= 0, () -> productId + " has negative total " + total);
+        assertTrue(reserved >= 0, () -> productId + " has negative reserved " + reserved);
+        assertTrue(reserved <= total, () -> productId + " oversold: reserved " + reserved + " > total " + total);
+        assertEquals(held.getOrDefault(productId, 0L), reserved, () -> productId + " reserved differs from open orders");
+        checked.incrementAndGet();
+      }, prefix + "%");
+      assertEquals(SKUS, checked.get());
+    }
+
+    private static String millis(long[] sorted, double quantile) {
+      long nanos = sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+      return String.format("%.1f", nanos / 1e6);
+    }
+  }
+
+  /** Zipf sampler over ranks 0..n-1 (rank 0 hottest) using a precomputed CDF. */
+  static final class Zipf {
+    private final double[] cdf;
+
+    Zipf(int n, double exponent) {
+      cdf = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) {
+        sum += 1 / Math.pow(k + 1, exponent);
+        cdf[k] = sum;
+      }
+      for (int k = 0; k < n; k++) cdf[k] /= sum;
+    }
+
+    int sample(Random random) {
+      int i = Arrays.binarySearch(cdf, random.nextDouble());
+      return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.example.shop.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationExpiryTest {
+
+  @Mock private OrderService orderService;
+  @Mock private PlatformTransactionManager txManager;
+
+  @Test
+  void an_order_that_cannot_be_cancelled_does_not_hold_up_its_batch() throws Exception {
+    // The startup scan finds no pending orders
+    DataSource dataSource = mock(DataSource.class, RETURNS_DEEP_STUBS);
+    when(orderService.expireOrders(anyList())).thenAnswer(inv -> {
+      List<Long> ids = inv.getArgument(0);
+      if (ids.contains(3L)) throw new IllegalStateException("order 3 is broken");
+      return ids.size();
+    });
+    ReservationExpiry expiry = new ReservationExpiry(orderService, dataSource, txManager, 0, 5, 200, 10_000, 3);
+    expiry.start();
+    expiry.onOrdersPlaced(new OrdersPlacedEvent(List.of(1L, 2L, 3L, 4L)));
+
+    // Retries back off 10, 20 ms; give the wheel time to hand out every attempt
+    for (int i = 0; i < 40; i++) {
+      Thread.sleep(5);
+      expiry.expireDue();
+    }
+
+    verify(orderService).expireOrders(List.of(1L, 2L, 3L, 4L));
+    verify(orderService).expireOrders(List.of(1L));
+    verify(orderService).expireOrders(List.of(4L));
+    verify(orderService, times(2)).expireOrders(List.of(3L));
+  }
+}
@@ -0,0 +1,47 @@
+package com.example.shop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+  @Test
+  void entries_expire_on_their_tick_not_before() {
+    TimingWheel wheel = new TimingWheel(10, 0);
+    wheel.add(1, 25);
+    wheel.add(2, 30);
+    wheel.add(3, 5_000);
+    assertEquals(List.of(), wheel.advance(20));
+    assertEquals(List.of(1L, 2L), wheel.advance(30));
+    assertEquals(List.of(), wheel.advance(4_990));
+    assertEquals(List.of(3L), wheel.advance(5_000));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void past_deadlines_are_due_on_the_next_advance() {
+    TimingWheel wheel = new TimingWheel(1_000, 100_000);
+    wheel.add(7, 40_000);
+    assertEquals(List.of(7L), wheel.advance(100_000));
+  }
+
+  @Test
+  void far_deadlines_cascade_through_every_level() {
+    TimingWheel wheel = new TimingWheel(1, 0);
+    long[] deadlines = { 511, 512, 513, 262_143, 262_144, 300_000, 134_217_728L, 134_217_729L };
+    for (int i = 0; i < deadlines.length; i++) wheel.add(i, deadlines[i]);
+
+    List<Long> seen = new ArrayList<>();
+    for (int i = 0; i < deadlines.length; i++) {
+      assertEquals(List.of(), wheel.advance(deadlines[i] - 1), "early at " + deadlines[i]);
+      List<Long> due = wheel.advance(deadlines[i]);
+      assertEquals(List.of((long) i), due, "due at " + deadlines[i]);
+      seen.addAll(due);
+    }
+    assertEquals(deadlines.length, seen.size());
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileLogSinkTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void batches_are_appended_as_json_lines_and_segments_roll_by_size() throws IOException {
+    try (FileLogSink sink = new FileLogSink(dir, 200, 10)) {
+      sink.publish(List.of(event(1, 7), event(2, 8)));
+      sink.publish(List.of(event(3, 9)));
+    }
+    List<Path> segments = segments();
+    assertEquals(List.of("00000000000000000001.ndjson", "00000000000000000003.ndjson"),
+        segments.stream().map(p -> p.getFileName().toString()).toList());
+    List<String> first = Files.readAllLines(segments.get(0));
+    assertEquals(2, first.size());
+    assertEquals("{\"id\":1,\"type\":\"ORDER_CONFIRMED\",\"orderId\":7,\"event\":{\"orderId\":7}}", first.get(0));
+  }
+
+  @Test
+  void reopening_drops_a_torn_line_and_keeps_appending() throws IOException {
+    try (FileLogSink sink = new FileLogSink(dir, 1 << 20, 10)) {
+      sink.publish(List.of(event(1, 7)));
+    }
+    Files.writeString(segments().get(0), "{\"id\":2,\"ty", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    try (FileLogSink sink = new FileLogSink(dir, 1 << 20, 10)) {
+      sink.publish(List.of(event(2, 8)));
+    }
+    List<String> lines = Files.readAllLines(segments().get(0));
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(1).startsWith("{\"id\":2,\"type\""));
+  }
+
+  @Test
+  void oldest_segments_are_deleted_beyond_the_limit() throws IOException {
+    try (FileLogSink sink = new FileLogSink(dir, 1, 2)) {
+      for (long id = 1; id <= 4; id++) sink.publish(List.of(event(id, id)));
+    }
+    assertEquals(List.of("00000000000000000003.ndjson", "00000000000000000004.ndjson"),
+        segments().stream().map(p -> p.getFileName().toString()).toList());
+  }
+
+  @Test
+  void segment_names_follow_write_order_when_ids_arrive_out_of_order() throws IOException {
+    try (FileLogSink sink = new FileLogSink(dir, 1, 10)) {
+      sink.publish(List.of(event(5, 1)));
+      sink.publish(List.of(event(4, 2)));
+    }
+    try (FileLogSink sink = new FileLogSink(dir, 1, 10)) {
+      sink.publish(List.of(event(3, 3)));
+    }
+    List<Path> segments = segments();
+    assertEquals(List.of("00000000000000000005.ndjson", "00000000000000000006.ndjson", "00000000000000000007.ndjson"),
+        segments.stream().map(p -> p.getFileName().toString()).toList());
+    assertTrue(Files.readAllLines(segments.get(1)).get(0).startsWith("{\"id\":4,"));
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.sorted().toList();
+    }
+  }
+
+  private static OutboxEvent event(long id, long orderId) {
+    OutboxEvent e = new OutboxEvent(orderId, "ORDER_CONFIRMED", "{\"orderId\":" + orderId + "}");
+    try {
+      Field f = OutboxEvent.class.getDeclaredField("id");
+      f.setAccessible(true);
+      f.set(e, id);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return e;
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.shop.service.outbox;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.Order;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.domain.User;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.repository.OutboxRepository;
+import com.example.shop.repository.UserRepository;
+import com.example.shop.service.OrderService;
+import com.example.shop.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class OutboxRelayTest extends PostgresIntegrationTest {
+
+  @Autowired private OrderService orderService;
+  @Autowired private OutboxRelay relay;
+  @Autowired private OutboxRepository outboxRepo;
+  @Autowired private UserRepository userRepo;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private DataSource dataSource;
+
+  @Test
+  void order_transitions_reach_the_log_in_order_and_leave_the_outbox() throws IOException {
+    User user = new User();
+    user.setEmail("outbox-" + System.nanoTime() + "@example.com");
+    user.setDisplayName("Outbox");
+    user = userRepo.save(user);
+    Inventory inv = new Inventory();
+    inv.setProductId("SKU-OUTBOX-" + System.nanoTime());
+    inv.setTotalStock(10);
+    inventoryRepo.save(inv);
+
+    Order order = orderService.createOrder(user.getId(), List.of(new OrderItem(inv.getProductId(), 2)));
+    orderService.confirmOrder(order.getId());
+    relay.relay();
+
+    assertEquals(0, outboxRepo.count());
+    List<String> lines = new ArrayList<>();
+    try (Stream<Path> files = Files.list(OUTBOX_DIR)) {
+      for (Path p : files.sorted().toList()) lines.addAll(Files.readAllLines(p));
+    }
+    List<String> forOrder = lines.stream().filter(l -> l.contains("\"orderId\":" + order.getId() + ",")).toList();
+    assertEquals(2, forOrder.size(), () -> String.join("\n", lines));
+    assertTrue(forOrder.get(0).contains("\"type\":\"ORDER_PENDING\""));
+    assertTrue(forOrder.get(1).contains("\"type\":\"ORDER_CONFIRMED\""));
+    assertTrue(forOrder.get(0).contains("\"productId\":\"" + inv.getProductId() + "\""));
+  }
+
+  @Test
+  void only_one_relay_works_at_a_time() throws Exception {
+    User user = new User();
+    user.setEmail("outbox-lock-" + System.nanoTime() + "@example.com");
+    user.setDisplayName("Outbox");
+    user = userRepo.save(user);
+    Inventory inv = new Inventory();
+    inv.setProductId("SKU-OUTBOX-LOCK-" + System.nanoTime());
+    inv.setTotalStock(10);
+    inventoryRepo.save(inv);
+    orderService.createOrder(user.getId(), List.of(new OrderItem(inv.getProductId(), 1)));
+
+    // Another instance in the middle of a batch
+    try (Connection other = dataSource.getConnection()) {
+      other.setAutoCommit(false);
+      try (Statement st = other.createStatement()) {
+        st.execute("SELECT pg_advisory_xact_lock(" + OutboxRelay.RELAY_LOCK + ")");
+      }
+      assertEquals(0, relay.relay());
+      assertEquals(1, outboxRepo.count());
+      other.rollback();
+    }
+
+    assertEquals(1, relay.relay());
+    assertEquals(0, outboxRepo.count());
+  }
+}
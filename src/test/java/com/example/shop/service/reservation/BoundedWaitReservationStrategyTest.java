@@ -0,0 +1,129 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.web.error.ServiceUnavailableException;
+import com.example.shop.web.error.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "app.inventory.lock-budget.wait-ms=150",
+    "app.inventory.lock-budget.max-waiters-per-product=2"
+})
+class BoundedWaitReservationStrategyTest extends PostgresIntegrationTest {
+
+  @Autowired private BoundedWaitReservationStrategy strategy;
+  @Autowired private ProductLockLimiter limiter;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private PlatformTransactionManager txManager;
+  @Autowired private JdbcTemplate jdbc;
+
+  private TransactionTemplate tx;
+  private String productId;
+
+  @BeforeEach
+  void setup() {
+    tx = new TransactionTemplate(txManager);
+    productId = "SKU-BUDGET-" + System.nanoTime();
+    Inventory inv = new Inventory();
+    inv.setProductId(productId);
+    inv.setTotalStock(10);
+    inventoryRepo.save(inv);
+  }
+
+  @Test
+  void reserve_gives_up_on_a_held_row_lock_within_the_budget() throws Exception {
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    ExecutorService holder = Executors.newSingleThreadExecutor();
+    try {
+      holder.submit(() -> tx.executeWithoutResult(s -> {
+        inventoryRepo.lockByProductId(productId);
+        locked.countDown();
+        awaitQuietly(done);
+      }));
+      assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+      long start = System.nanoTime();
+      ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class,
+          () -> tx.executeWithoutResult(s -> strategy.reserve(new OrderItem(productId, 1))));
+      long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      assertTrue(waitedMs < 2_000, "waited " + waitedMs + " ms");
+      assertEquals(1, ex.getRetryAfterSeconds());
+      assertEquals(0, limiter.holders(productId));
+    } finally {
+      done.countDown();
+      holder.shutdown();
+    }
+  }
+
+  @Test
+  void later_lines_only_get_what_earlier_lock_waits_left_of_the_budget() throws Exception {
+    Inventory other = new Inventory();
+    other.setProductId(productId + "-B");
+    other.setTotalStock(10);
+    inventoryRepo.save(other);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    ExecutorService holder = Executors.newSingleThreadExecutor();
+    try {
+      holder.submit(() -> tx.executeWithoutResult(s -> {
+        inventoryRepo.lockByProductId(productId);
+        locked.countDown();
+        sleepQuietly(100);
+      }));
+      assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+      String timeout = tx.execute(s -> {
+        strategy.reserve(new OrderItem(productId, 1));
+        strategy.reserve(new OrderItem(productId + "-B", 1));
+        return jdbc.queryForObject("SHOW lock_timeout", String.class);
+      });
+      assertTrue(timeout.endsWith("ms") && Integer.parseInt(timeout.replace("ms", "")) < 150,
+          "lock_timeout was " + timeout);
+    } finally {
+      holder.shutdown();
+    }
+  }
+
+  @Test
+  void requests_beyond_the_per_product_cap_are_turned_away_at_once() {
+    tx.executeWithoutResult(s -> {
+      strategy.reserve(new OrderItem(productId, 1));
+      strategy.reserve(new OrderItem(productId, 1));
+      assertEquals(2, limiter.holders(productId));
+      assertThrows(TooManyRequestsException.class, () -> strategy.reserve(new OrderItem(productId, 1)));
+    });
+    assertEquals(0, limiter.holders(productId));
+    assertEquals(2, inventoryRepo.findByProductId(productId).orElseThrow().getReservedStock());
+  }
+
+  private static void sleepQuietly(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
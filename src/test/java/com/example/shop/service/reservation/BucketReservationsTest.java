@@ -0,0 +1,93 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.InventoryBucket;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryBucketRepository;
+import com.example.shop.web.error.ConflictException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BucketReservationsTest {
+
+  @Mock private InventoryBucketRepository bucketRepo;
+  @Mock private StripeDirectory directory;
+  @InjectMocks private BucketReservations buckets;
+
+  @Test
+  void unstriped_product_is_left_to_the_inventory_row() {
+    when(directory.bucketCount("SKU-BOOK-123")).thenReturn(1);
+    assertFalse(buckets.reserve(new OrderItem("SKU-BOOK-123", 1)));
+    verifyNoInteractions(bucketRepo);
+  }
+
+  @Test
+  void reserve_takes_a_single_bucket_without_locking_when_one_can_cover_the_line() {
+    when(directory.bucketCount("SKU-HOT")).thenReturn(4);
+    when(bucketRepo.tryReserve(eq("SKU-HOT"), anyInt(), eq(2))).thenReturn(0, 1);
+    assertTrue(buckets.reserve(new OrderItem("SKU-HOT", 2)));
+    verify(bucketRepo, times(2)).tryReserve(eq("SKU-HOT"), anyInt(), eq(2));
+    verify(bucketRepo, never()).lockByProductId(anyString());
+  }
+
+  @Test
+  void reserve_spreads_across_buckets_when_no_single_bucket_is_enough() {
+    when(directory.bucketCount("SKU-HOT")).thenReturn(2);
+    when(bucketRepo.tryReserve(eq("SKU-HOT"), anyInt(), eq(5))).thenReturn(0);
+    InventoryBucket b0 = bucket(0, 3, 0), b1 = bucket(1, 4, 1);
+    when(bucketRepo.lockByProductId("SKU-HOT")).thenReturn(List.of(b0, b1));
+    assertTrue(buckets.reserve(new OrderItem("SKU-HOT", 5)));
+    assertEquals(3, b0.getReservedStock());
+    assertEquals(3, b1.getReservedStock());
+  }
+
+  @Test
+  void reserve_conflicts_when_all_buckets_together_are_short() {
+    when(directory.bucketCount("SKU-HOT")).thenReturn(2);
+    when(bucketRepo.tryReserve(eq("SKU-HOT"), anyInt(), eq(9))).thenReturn(0);
+    when(bucketRepo.lockByProductId("SKU-HOT")).thenReturn(List.of(bucket(0, 3, 0), bucket(1, 4, 1)));
+    ConflictException ex = assertThrows(ConflictException.class, () -> buckets.reserve(new OrderItem("SKU-HOT", 9)));
+    assertTrue(ex.getMessage().contains("available=6"));
+  }
+
+  @Test
+  void release_finds_the_buckets_of_a_product_the_directory_has_not_seen_striped() {
+    when(directory.bucketCount("SKU-HOT")).thenReturn(1);
+    InventoryBucket b0 = bucket(0, 3, 1), b1 = bucket(1, 4, 2);
+    when(bucketRepo.lockByProductId("SKU-HOT")).thenReturn(List.of(b0, b1));
+    assertTrue(buckets.release(new OrderItem("SKU-HOT", 3)));
+    assertEquals(0, b0.getReservedStock());
+    assertEquals(0, b1.getReservedStock());
+    verify(bucketRepo, never()).tryRelease(anyString(), anyInt(), anyInt());
+  }
+
+  @Test
+  void products_missing_from_the_directory_are_checked_against_the_bucket_rows() {
+    when(directory.bucketCount("SKU-HOT")).thenReturn(4);
+    when(directory.bucketCount("SKU-NEW")).thenReturn(1);
+    when(directory.bucketCount("SKU-BOOK-123")).thenReturn(1);
+    when(bucketRepo.findStripedProductIdsIn(List.of("SKU-NEW", "SKU-BOOK-123"))).thenReturn(List.of("SKU-NEW"));
+    assertEquals(Set.of("SKU-HOT", "SKU-NEW"), buckets.stripedAmong(List.of("SKU-HOT", "SKU-NEW", "SKU-BOOK-123")));
+  }
+
+  @Test
+  void release_of_an_unstriped_product_is_left_to_the_inventory_row() {
+    when(directory.bucketCount("SKU-BOOK-123")).thenReturn(1);
+    when(bucketRepo.lockByProductId("SKU-BOOK-123")).thenReturn(List.of());
+    assertFalse(buckets.release(new OrderItem("SKU-BOOK-123", 1)));
+  }
+
+  private InventoryBucket bucket(int no, int total, int reserved) {
+    InventoryBucket b = new InventoryBucket("SKU-HOT", no); b.setTotalStock(total); b.setReservedStock(reserved); return b;
+  }
+}
@@ -0,0 +1,97 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.domain.OrderItem;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.support.PostgresIntegrationTest;
+import com.example.shop.web.error.ConflictException;
+import com.example.shop.web.error.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "app.inventory.optimistic.pessimistic-products=SKU-PINNED",
+    "app.inventory.optimistic.contention.threshold=2"
+})
+class OptimisticReservationStrategyTest extends PostgresIntegrationTest {
+
+  @Autowired private OptimisticReservationStrategy strategy;
+  @Autowired private ProductContention contention;
+  @Autowired private InventoryRepository inventoryRepo;
+  @Autowired private PlatformTransactionManager txManager;
+
+  private TransactionTemplate tx;
+  private String productId;
+
+  @BeforeEach
+  void setup() {
+    tx = new TransactionTemplate(txManager);
+    productId = "SKU-OPTIMISTIC-" + System.nanoTime();
+    Inventory inv = new Inventory();
+    inv.setProductId(productId);
+    inv.setTotalStock(5);
+    inventoryRepo.save(inv);
+  }
+
+  @Test
+  void reserve_and_release_bump_the_version() {
+    long before = inventoryRepo.findVersionByProductId(productId).orElseThrow().version();
+
+    tx.executeWithoutResult(s -> strategy.reserve(new OrderItem(productId, 3)));
+    Inventory reserved = inventoryRepo.findByProductId(productId).orElseThrow();
+    assertEquals(3, reserved.getReservedStock());
+    assertEquals(before + 1, reserved.getVersion());
+
+    tx.executeWithoutResult(s -> strategy.release(new OrderItem(productId, 5)));
+    Inventory released = inventoryRepo.findByProductId(productId).orElseThrow();
+    assertEquals(0, released.getReservedStock());
+    assertEquals(before + 2, released.getVersion());
+  }
+
+  @Test
+  void update_with_a_stale_version_misses() {
+    long stale = inventoryRepo.findVersionByProductId(productId).orElseThrow().version();
+    tx.executeWithoutResult(s -> strategy.reserve(new OrderItem(productId, 1)));
+
+    Integer updated = tx.execute(s -> inventoryRepo.addReservedIfVersion(productId, 1, stale));
+
+    assertEquals(0, updated);
+    assertEquals(1, inventoryRepo.findByProductId(productId).orElseThrow().getReservedStock());
+  }
+
+  @Test
+  void insufficient_stock_conflicts_without_writing() {
+    long before = inventoryRepo.findVersionByProductId(productId).orElseThrow().version();
+
+    ConflictException ex = assertThrows(ConflictException.class,
+        () -> tx.executeWithoutResult(s -> strategy.reserve(new OrderItem(productId, 6))));
+
+    assertEquals("insufficient_stock", ex.getReason());
+    assertEquals(before, inventoryRepo.findVersionByProductId(productId).orElseThrow().version());
+  }
+
+  @Test
+  void unknown_product_is_not_found() {
+    assertThrows(NotFoundException.class,
+        () -> tx.executeWithoutResult(s -> strategy.reserve(new OrderItem("SKU-MISSING-" + System.nanoTime(), 1))));
+  }
+
+  @Test
+  void repeated_conflicts_move_a_product_to_row_locks() {
+    assertTrue(contention.isPessimistic("SKU-PINNED"));
+    assertFalse(contention.isPessimistic(productId));
+
+    assertFalse(contention.conflict(productId));
+    assertTrue(contention.conflict(productId));
+    assertTrue(contention.isPessimistic(productId));
+
+    tx.executeWithoutResult(s -> strategy.reserve(new OrderItem(productId, 2)));
+    assertEquals(2, inventoryRepo.findByProductId(productId).orElseThrow().getReservedStock());
+  }
+}
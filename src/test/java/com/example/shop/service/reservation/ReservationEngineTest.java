@@ -0,0 +1,146 @@
+package com.example.shop.service.reservation;
+
+import com.example.shop.domain.Inventory;
+import com.example.shop.repository.InventoryRepository;
+import com.example.shop.web.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationEngineTest {
+
+  @Mock private InventoryRepository inventoryRepo;
+  @Mock private JdbcTemplate jdbc;
+  @Mock private PlatformTransactionManager txManager;
+  @TempDir Path journalDir;
+
+  private final List<ReservationEngine> engines = new ArrayList<>();
+
+  @AfterEach
+  void stopEngines() {
+    engines.forEach(ReservationEngine::stop);
+  }
+
+  @Test
+  void concurrent_reservations_never_exceed_total() throws Exception {
+    when(inventoryRepo.findAll()).thenReturn(List.of(inv("SKU-HOT", 100, 0)));
+    ReservationEngine engine = start();
+
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    AtomicInteger reserved = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      futures.add(pool.submit(() -> {
+        if (engine.reserve("SKU-HOT", 1).join().status() == ReservationShard.Status.RESERVED) reserved.incrementAndGet();
+      }));
+    }
+    for (Future<?> f : futures) f.get(5, TimeUnit.SECONDS);
+    pool.shutdown();
+
+    assertEquals(100, reserved.get());
+    assertArrayEquals(new int[] { 100, 100 }, engine.snapshot("SKU-HOT").join());
+    assertEquals(ReservationShard.Status.UNKNOWN, engine.reserve("SKU-NONE", 1).join().status());
+  }
+
+  @Test
+  void unflushed_reservations_are_recovered_from_the_journal() {
+    when(inventoryRepo.findAll()).thenReturn(List.of(inv("SKU-BOOK-123", 10, 0), inv("SKU-MUG-456", 5, 1)));
+    when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new IllegalStateException("db down"));
+    ReservationEngine first = start();
+    assertEquals(ReservationShard.Status.RESERVED, first.reserve("SKU-BOOK-123", 4).join().status());
+    assertEquals(ReservationShard.Status.RESERVED, first.reserve("SKU-MUG-456", 2).join().status());
+    first.release("SKU-BOOK-123", 1).join();
+    first.stop();
+
+    // The table still shows the pre-crash values; the journal must win
+    ReservationEngine second = start();
+    assertArrayEquals(new int[] { 10, 3 }, second.snapshot("SKU-BOOK-123").join());
+    assertArrayEquals(new int[] { 5, 3 }, second.snapshot("SKU-MUG-456").join());
+  }
+
+  @Test
+  void flushed_reservations_are_written_back_and_journal_is_compacted() {
+    when(inventoryRepo.findAll()).thenReturn(List.of(inv("SKU-BOOK-123", 10, 0)));
+    ReservationEngine first = start();
+    first.reserve("SKU-BOOK-123", 4).join();
+    first.flush();
+    verify(jdbc).batchUpdate(eq("UPDATE inventory SET reserved_stock = ?, version = version + 1 WHERE product_id = ?"),
+        argThat((List<Object[]> args) -> args.size() == 1 && args.get(0)[0].equals(4) && args.get(0)[1].equals("SKU-BOOK-123")));
+    first.stop();
+
+    // After a clean flush the table is authoritative again
+    when(inventoryRepo.findAll()).thenReturn(List.of(inv("SKU-BOOK-123", 10, 4)));
+    ReservationEngine second = start();
+    assertArrayEquals(new int[] { 10, 4 }, second.snapshot("SKU-BOOK-123").join());
+  }
+
+  @Test
+  void releases_are_queued_even_when_the_shard_is_full() throws Exception {
+    ReservationShard shard = new ReservationShard(0, 1, new ReservationJournal(journalDir, "full", 1 << 16));
+    shard.load("SKU-HOT", 10, 5);
+
+    CompletableFuture<ReservationShard.Outcome> accepted = shard.submit(() -> shard.reserve("SKU-HOT", 1));
+    CompletableFuture<ReservationShard.Outcome> rejected = shard.submit(() -> shard.reserve("SKU-HOT", 1));
+    CompletableFuture<Boolean> release = shard.submitAlways(() -> shard.release("SKU-HOT", 3));
+    assertTrue(rejected.isCompletedExceptionally());
+    assertInstanceOf(ServiceUnavailableException.class, assertThrows(ExecutionException.class, rejected::get).getCause());
+
+    shard.start();
+    assertEquals(ReservationShard.Status.RESERVED, accepted.get(5, TimeUnit.SECONDS).status());
+    assertTrue(release.get(5, TimeUnit.SECONDS));
+    assertArrayEquals(new int[] { 10, 3 }, shard.submit(() -> shard.snapshot("SKU-HOT")).get(5, TimeUnit.SECONDS));
+    shard.stop();
+  }
+
+  @Test
+  void a_full_journal_segment_is_compacted_instead_of_failing() throws Exception {
+    ReservationShard shard = new ReservationShard(0, 1000, new ReservationJournal(journalDir, "small", 256));
+    shard.load("SKU-HOT", 10, 0);
+    shard.load("SKU-COLD", 10, 0);
+    shard.start();
+    shard.submit(() -> shard.reserve("SKU-COLD", 2)).get(5, TimeUnit.SECONDS);
+    // Each record is ~15 bytes, so this goes round both segments several times
+    for (int i = 0; i < 100; i++) {
+      assertEquals(ReservationShard.Status.RESERVED, shard.submit(() -> shard.reserve("SKU-HOT", 1)).get(5, TimeUnit.SECONDS).status());
+      assertTrue(shard.submit(() -> shard.release("SKU-HOT", 1)).get(5, TimeUnit.SECONDS));
+    }
+    shard.submit(() -> shard.reserve("SKU-HOT", 3)).get(5, TimeUnit.SECONDS);
+    shard.stop();
+
+    ReservationShard recovered = new ReservationShard(0, 1000, new ReservationJournal(journalDir, "small", 256));
+    recovered.load("SKU-HOT", 10, 0);
+    recovered.load("SKU-COLD", 10, 0);
+    recovered.recover();
+    assertArrayEquals(new int[] { 10, 3 }, recovered.snapshot("SKU-HOT"));
+    assertArrayEquals(new int[] { 10, 2 }, recovered.snapshot("SKU-COLD"));
+  }
+
+  private ReservationEngine start() {
+    ReservationEngine engine = new ReservationEngine(inventoryRepo, jdbc, txManager, 2, 1000, journalDir, 1 << 16, 1000,
+        new SimpleMeterRegistry());
+    engine.start();
+    engines.add(engine);
+    return engine;
+  }
+
+  private Inventory inv(String productId, int total, int reserved) {
+    Inventory i = new Inventory(); i.setProductId(productId); i.setTotalStock(total); i.setReservedStock(reserved); return i;
+  }
+}
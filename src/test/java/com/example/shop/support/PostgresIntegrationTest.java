@@ -0,0 +1,62 @@
+package com.example.shop.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base class for tests that need a real Postgres. One embedded server is started per JVM and
+ * shared by every subclass; the schema is created by Hibernate as in production.
+ */
+public abstract class PostgresIntegrationTest {
+  private static final EmbeddedPostgres POSTGRES = start();
+  protected static final Path OUTBOX_DIR = tempDir();
+
+  private static EmbeddedPostgres start() {
+    try {
+      EmbeddedPostgres pg = EmbeddedPostgres.builder().start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try { pg.close(); } catch (IOException ignored) { }
+      }));
+      return pg;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Cannot start embedded Postgres", ex);
+    }
+  }
+
+  private static Path tempDir() {
+    try {
+      return Files.createTempDirectory("outbox-test");
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** JDBC URL of another database on the same server, created on first use. */
+  protected static String databaseUrl(String database) {
+    try (var con = POSTGRES.getPostgresDatabase().getConnection(); var st = con.createStatement()) {
+      try (var rs = st.executeQuery("SELECT 1 FROM pg_database WHERE datname = '" + database + "'")) {
+        if (!rs.next()) st.execute("CREATE DATABASE " + database);
+      }
+    } catch (java.sql.SQLException ex) {
+      throw new IllegalStateException("Cannot create database " + database, ex);
+    }
+    return POSTGRES.getJdbcUrl("postgres", database);
+  }
+
+  @DynamicPropertySource
+  static void postgresProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+    registry.add("spring.datasource.username", () -> "postgres");
+    registry.add("spring.datasource.password", () -> "");
+    registry.add("app.jwt.secret", () -> "integration-test-secret-integration-test-secret");
+    // Tests drive the relay themselves
+    registry.add("app.outbox.relay.interval-ms", () -> "3600000");
+    registry.add("app.outbox.log.dir", () -> OUTBOX_DIR.toString());
+  }
+}
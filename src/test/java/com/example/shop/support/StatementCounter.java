@@ -0,0 +1,99 @@
+package com.example.shop.support;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counts JDBC round trips made by the thread that called {@link #start()}: every execute call,
+ * with a whole {@code executeBatch} counting as one. Scheduled jobs on other threads are ignored.
+ */
+public class StatementCounter {
+  private static final Set<String> EXECUTES = Set.of(
+      "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+  /** One executed round trip; {@code batch} is true for executeBatch. */
+  public record Execution(String sql, boolean batch) { }
+
+  private final List<Execution> executions = new ArrayList<>();
+  private volatile Thread recording;
+
+  public void start() {
+    executions.clear();
+    recording = Thread.currentThread();
+  }
+
+  public List<Execution> stop() {
+    recording = null;
+    return List.copyOf(executions);
+  }
+
+  private void record(String sql, boolean batch) {
+    if (Thread.currentThread() == recording) executions.add(new Execution(sql, batch));
+  }
+
+  private Object proxy(Class<?> type, InvocationHandler handler) {
+    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler);
+  }
+
+  DataSource wrap(DataSource ds) {
+    return (DataSource) proxy(DataSource.class, (proxy, m, args) -> {
+      Object result = invoke(ds, m, args);
+      return result instanceof Connection c ? wrap(c) : result;
+    });
+  }
+
+  private Connection wrap(Connection conn) {
+    return (Connection) proxy(Connection.class, (proxy, m, args) -> {
+      Object result = invoke(conn, m, args);
+      if (!(result instanceof Statement st)) return result;
+      String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+      Class<?> type = m.getReturnType();
+      return proxy(type, (p, sm, sargs) -> {
+        if (EXECUTES.contains(sm.getName())) {
+          String executed = sargs != null && sargs.length > 0 && sargs[0] instanceof String s ? s : sql;
+          record(executed, sm.getName().endsWith("Batch"));
+        }
+        return invoke(st, sm, sargs);
+      });
+    });
+  }
+
+  private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+    try {
+      return m.invoke(target, args);
+    } catch (InvocationTargetException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @TestConfiguration
+  public static class Config {
+    @Bean
+    public StatementCounter statementCounter() {
+      return new StatementCounter();
+    }
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource(ObjectProvider<StatementCounter> counter) {
+      return new BeanPostProcessor() {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String name) {
+          return bean instanceof DataSource ds ? counter.getObject().wrap(ds) : bean;
+        }
+      };
+    }
+  }
+}